@@ -0,0 +1,138 @@
+package qwermotion.azathoth;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Arrays;
+
+/**
+ * Anytime Repairing A* (ARA*) auf dem {@link CostGrid}.
+ * Jeder Durchlauf sucht mit f = g + ε·h; ist ein Pfad gefunden, wird ε um {@link #EPSILON_STEP}
+ * gesenkt und die Suche mit den bereits bekannten g-Werten fortgesetzt, statt neu zu beginnen.
+ * Knoten, die in einem Durchlauf schon geschlossen waren und billiger erreicht werden, wandern
+ * in eine Inkonsistenz-Liste und kommen erst im nächsten Durchlauf wieder auf den Heap.
+ *
+ * Die Heuristik ist die konsistente Zugzahl-Schranke aus {@link PathSession#heuristic}, damit
+ * nach einem vollständigen Durchlauf die Kosten höchstens ε-mal so hoch wie optimal sind.
+ * Abgebrochen wird über {@link SearchControl} (Zeitbudget, Cancel).
+ */
+final class AnytimeSearch {
+    static final double DEFAULT_EPSILON = 3.0;
+    static final double EPSILON_STEP = 0.5;
+
+    private AnytimeSearch() {}
+
+    static Pathfinder.Path findPath(CostGrid grid, BlockPos start, BlockPos goal, int maxRadius,
+                                    double epsilon, SearchControl control) {
+        long startNanos = System.nanoTime();
+        int sx = start.getX(), sy = start.getY(), sz = start.getZ();
+        long s = PackedPos.pack(sx, sy, sz);
+        long t = PackedPos.pack(goal.getX(), goal.getY(), goal.getZ());
+        double eps = Math.max(1.0, epsilon);
+
+        Pathfinder.Nodes nodes = new Pathfinder.Nodes(1 << 12);
+        NodeHeap open = new NodeHeap(1 << 12);
+        int[] closedIn = new int[1 << 12];  // Durchlauf, in dem der Knoten geschlossen wurde (0 = offen)
+        int[] incons = new int[64];
+        int inconsSize = 0;
+        boolean[] inIncons = new boolean[1 << 12];
+
+        int startId = nodes.idOf(s);
+        nodes.g[startId] = 0;
+        double h0 = PathSession.heuristic(s, t);
+        open.insertOrUpdate(startId, eps * h0, h0);
+
+        int closest = startId;
+        double closestH = h0;
+        Pathfinder.Path best = null;
+        double provenEps = 0; // 0 = noch kein Durchlauf abgeschlossen, keine Schranke
+        int solutions = 0;
+        long expanded = 0;
+        boolean stopped = false;
+
+        for (int pass = 1; ; pass++) {
+            // ImprovePath: solange der beste offene Schlüssel g(Ziel) noch unterbieten kann
+            int goalId = nodes.index.get(t);
+            while (!open.isEmpty() && expanded < Pathfinder.MAX_ITER
+                    && (goalId < 0 || nodes.g[goalId] > open.peekKey())) {
+                if (control != null && (expanded & SearchControl.CHECK_MASK) == 0
+                        && control.checkpoint(expanded, open.peekKey(), closestH)) {
+                    stopped = true;
+                    break;
+                }
+                int cur = open.poll();
+                expanded++;
+                if (cur >= closedIn.length) closedIn = Arrays.copyOf(closedIn, nodes.pos.length);
+                closedIn[cur] = pass;
+                long cp = nodes.pos[cur];
+                if (cp == t) continue; // Schlüssel des Ziels bleibt, Schleifenbedingung übernimmt
+
+                int cx = PackedPos.x(cp), cy = PackedPos.y(cp), cz = PackedPos.z(cp);
+                for (int[] d : Pathfinder.MOVES) {
+                    int nx = cx + d[0], ny = cy + d[1], nz = cz + d[2];
+                    if (Math.abs(nx - sx) + Math.abs(ny - sy) + Math.abs(nz - sz) > maxRadius) continue;
+                    long np = PackedPos.pack(nx, ny, nz);
+                    int step = grid.stepCost(nx, ny, nz, np == t);
+                    if (step == Pathfinder.INVALID) continue;
+                    int build = Pathfinder.stepBuild(step), time = Pathfinder.stepTime(step);
+                    double ng = nodes.g[cur] + 1 + build + time;
+                    int next = nodes.idOf(np);
+                    if (ng >= nodes.g[next]) continue;
+                    nodes.g[next] = ng;
+                    nodes.parent[next] = cur;
+                    nodes.build[next] = nodes.build[cur] + build;
+                    nodes.time[next] = nodes.time[cur] + time;
+                    if (np == t) goalId = next;
+                    double h = PathSession.heuristic(np, t);
+                    if (h < closestH) { closestH = h; closest = next; }
+                    if (next >= closedIn.length) closedIn = Arrays.copyOf(closedIn, nodes.pos.length);
+                    if (closedIn[next] != pass) {
+                        open.insertOrUpdate(next, ng + eps * h, h);
+                    } else {
+                        if (next >= inIncons.length) inIncons = Arrays.copyOf(inIncons, nodes.pos.length);
+                        if (!inIncons[next]) {
+                            inIncons[next] = true;
+                            if (inconsSize == incons.length) incons = Arrays.copyOf(incons, inconsSize * 2);
+                            incons[inconsSize++] = next;
+                        }
+                    }
+                }
+            }
+
+            // auch ein abgebrochener Durchlauf kann einen besseren Pfad gefunden haben, nur ohne Schranke
+            if (goalId >= 0 && nodes.g[goalId] < Double.POSITIVE_INFINITY) {
+                if (best == null || nodes.g[goalId] < best.totalCost()) {
+                    best = nodes.toPath(goalId);
+                    solutions++;
+                }
+                if (!stopped) provenEps = eps;
+            }
+            if (stopped || eps <= 1.0 || goalId < 0 || (open.isEmpty() && inconsSize == 0)
+                    || expanded >= Pathfinder.MAX_ITER) break;
+
+            // nächster Durchlauf: ε senken, Inkonsistente zurück auf den Heap, Schlüssel neu berechnen
+            eps = Math.max(1.0, eps - EPSILON_STEP);
+            int[] keep = new int[open.size() + inconsSize];
+            int n = 0;
+            while (!open.isEmpty()) keep[n++] = open.poll();
+            for (int i = 0; i < inconsSize; i++) {
+                inIncons[incons[i]] = false;
+                keep[n++] = incons[i];
+            }
+            inconsSize = 0;
+            for (int i = 0; i < n; i++) {
+                int id = keep[i];
+                double h = PathSession.heuristic(nodes.pos[id], t);
+                open.insertOrUpdate(id, nodes.g[id] + eps * h, h);
+            }
+        }
+
+        double frontier = open.isEmpty() ? Double.POSITIVE_INFINITY : open.peekKey();
+        if (control != null) control.report(expanded, frontier, closestH);
+        boolean timedOut = control != null && control.isTimedOut();
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        if (best != null)
+            return best.withStats(new Pathfinder.Stats(true, provenEps, solutions, expanded, elapsedMs, timedOut));
+        return nodes.toPath(closest)
+                .withStats(new Pathfinder.Stats(false, 0, 0, expanded, elapsedMs, timedOut));
+    }
+}
@@ -1,57 +1,83 @@
 import requests
 import time
 import math
+import json
 
 class Azathoth:
     def __init__(self, base_url="http://localhost:8080"):
         self.base = base_url.rstrip("/")
+        # eine Sitzung: Verbindungen bleiben offen, gzip wird von requests ausgepackt
+        self.http = requests.Session()
         self.path = []
         self.position = None
 
     def get_playerpos(self):
-        r = requests.get(f"{self.base}/position"); r.raise_for_status()
+        r = self.http.get(f"{self.base}/position"); r.raise_for_status()
         data = r.json()
         self.position = (data["x"], data["y"], data["z"])
         return self.position
 
+    def stream(self, channels=("position",), every=1, **params):
+        """Abonniert /stream (Server-Sent Events) und liefert (kanal, daten) pro Änderung.
+        every: alle n Ticks, weitere Parameter gehen an die Kanäle (z.B. r=16 für entities)."""
+        params = dict(params, channels=",".join(channels), every=every)
+        with self.http.get(f"{self.base}/stream", params=params, stream=True) as r:
+            r.raise_for_status()
+            event = None
+            for line in r.iter_lines(decode_unicode=True):
+                if line.startswith("event: "):
+                    event = line[7:]
+                elif line.startswith("data: ") and event is not None:
+                    data = json.loads(line[6:])
+                    if event == "position" and "x" in data:
+                        self.position = (data["x"], data["y"], data["z"])
+                    yield event, data
+
     def get_path_to(self, goal_position, radius=64):
         x, y, z = self.get_playerpos()
         gx, gy, gz = goal_position
         params = {"sx":int(x),"sy":int(y),"sz":int(z),
                   "gx":gx,"gy":gy,"gz":gz,"r":radius}
-        r = requests.get(f"{self.base}/find_path", params=params); r.raise_for_status()
+        r = self.http.get(f"{self.base}/find_path", params=params); r.raise_for_status()
         self.path = [tuple(pos) for pos in r.json()["positions"]]
         return self.path
 
     def get_block_status(self, pos):
         x, y, z = pos
-        r = requests.get(f"{self.base}/block_status", params={"x":x,"y":y,"z":z}); r.raise_for_status()
+        r = self.http.get(f"{self.base}/block_status", params={"x":x,"y":y,"z":z}); r.raise_for_status()
         return r.json()["block"]
 
-    def destroy_block(self, pos, interval=0.2):
+    def wait_for_block(self, pos, is_=None, not_=None, timeout=5.0):
+        """Wartet serverseitig (/wait/block), bis an pos der Block is_ steht bzw. nicht mehr not_.
+        Liefert True, wenn die Bedingung vor dem Timeout eingetreten ist."""
+        x, y, z = pos
+        params = {"x":x,"y":y,"z":z,"timeout_ms":int(timeout * 1000)}
+        if is_ is not None: params["is"] = is_
+        if not_ is not None: params["not"] = not_
+        r = self.http.get(f"{self.base}/wait/block", params=params); r.raise_for_status()
+        return r.json()["ok"]
+
+    def destroy_block(self, pos, timeout=10.0):
         x, y, z = pos
-        requests.get(f"{self.base}/break_block", params={"x":x,"y":y,"z":z}).raise_for_status()
-        # Polling
-        while self.get_block_status(pos) != "minecraft:air":
-            time.sleep(interval)
+        self.http.get(f"{self.base}/break_block", params={"x":x,"y":y,"z":z}).raise_for_status()
+        return self.wait_for_block(pos, is_="minecraft:air", timeout=timeout)
 
-    def place_block(self, pos, name, interval=0.2):
+    def place_block(self, pos, name, timeout=5.0):
         x, y, z = pos
         
         #requests.get(f"{self.base}/place_block", params={"x":x,"y":y,"z":z,"block":name}).raise_for_status()
-        requests.get(f"http://localhost:8080/place_block?x={x}&y={y}&z={z}&block=minecraft:dirt")
+        self.http.get(f"http://localhost:8080/place_block?x={x}&y={y}&z={z}&block=minecraft:dirt")
         
-        while self.get_block_status(pos) != name:
-            time.sleep(interval)
+        return self.wait_for_block(pos, is_=name, timeout=timeout)
 
     def set_forward(self, on):
-        requests.get(f"{self.base}/forward", params={"pressed":str(on).lower()})
+        self.http.get(f"{self.base}/forward", params={"pressed":str(on).lower()})
 
     def set_jumping(self, on):
-        requests.get(f"{self.base}/jump", params={"pressed":str(on).lower()})
+        self.http.get(f"{self.base}/jump", params={"pressed":str(on).lower()})
 
     def set_looking(self, yaw, pitch):
-        requests.get(f"{self.base}/look", params={"yaw":yaw,"pitch":pitch})
+        self.http.get(f"{self.base}/look", params={"yaw":yaw,"pitch":pitch})
 
     def goto_next_position(self, target):
         # target ist (tx_block, ty_block, tz_block) als Integer
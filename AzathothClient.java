@@ -1,12 +1,19 @@
 package name.azathoth;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import qwermotion.azathoth.BlockCostTable;
 
 import java.io.IOException;
 
 public class AzathothClient implements ClientModInitializer {
     @Override
     public void onInitializeClient() {
+        WorldChangeTracker.register();
+        // Raw-IDs der BlockStates können sich beim Registry-Sync mit dem Server ändern
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> BlockCostTable.rebuild());
+        CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> BlockCostTable.rebuild());
         try {
             new SimpleHttpServer();
         } catch (IOException e) {
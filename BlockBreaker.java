@@ -0,0 +1,66 @@
+package name.azathoth;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.FluidBlock;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.World;
+
+/**
+ * Abbau eines Blocks über mehrere Ticks für /break_block. {@link #tick} läuft am Ende jedes
+ * Client-Ticks und schickt Fortschritt, bis der Block Luft ist (auch cave_air, void_air).
+ * Aufgegeben wird bei unzerstörbaren Blöcken und Flüssigkeiten, nach einem Welt- oder
+ * Spielerwechsel, nach Ablauf der Frist oder über {@link #cancel}. Wie beim Spieler läuft
+ * höchstens ein Abbau gleichzeitig.
+ *
+ * Alle Methoden nur auf dem Client-Thread aufrufen.
+ */
+final class BlockBreaker {
+    private BlockPos target;
+    private World world;
+    private long deadline; // System.nanoTime()
+
+    /** Beginnt den Abbau von target; ein laufender Abbau wird vorher abgebrochen. */
+    void start(MinecraftClient mc, BlockPos target, long timeoutMs) {
+        cancel(mc);
+        this.target = target.toImmutable();
+        this.world = mc.world;
+        this.deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        mc.interactionManager.attackBlock(this.target, Direction.UP);
+    }
+
+    /** Bricht den laufenden Abbau ab. @return ob einer lief */
+    boolean cancel(MinecraftClient mc) {
+        if (target == null) return false;
+        if (mc.interactionManager != null) mc.interactionManager.cancelBlockBreaking();
+        target = null;
+        world = null;
+        return true;
+    }
+
+    /** Der Block, der gerade abgebaut wird, oder null. */
+    BlockPos target() {
+        return target;
+    }
+
+    void tick(MinecraftClient mc) {
+        if (target == null) return;
+        if (mc.world != world || mc.player == null || mc.interactionManager == null
+                || System.nanoTime() - deadline > 0) {
+            cancel(mc);
+            return;
+        }
+        BlockState state = world.getBlockState(target);
+        if (state.isAir()) {
+            target = null;
+            world = null;
+            return;
+        }
+        if (state.getHardness(world, target) < 0 || state.getBlock() instanceof FluidBlock) {
+            cancel(mc);
+            return;
+        }
+        mc.interactionManager.updateBlockBreakingProgress(target, Direction.UP);
+    }
+}
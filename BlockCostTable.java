@@ -0,0 +1,124 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.FallingBlock;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.EmptyBlockView;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vorberechnete Zell-Flags und Härte für jeden BlockState, indiziert über die Raw-ID aus
+ * {@link Block#STATE_IDS}. Die Sampler lesen pro Block nur noch einen Array-Eintrag
+ * (Flags im unteren, Härte im oberen Byte) statt Fluid-State, Kollisionsform, Opazität
+ * und Härte jedes Mal neu auszuwerten.
+ *
+ * Die Tabelle wird beim ersten Zugriff gebaut und nach Registry-Sync (Server-Beitritt) oder
+ * Tag-Reload über {@link #rebuild()} neu erzeugt. Dazu kommt die konfigurierbare
+ * {@link Config} des Kostenmodells. Jede Änderung erhöht {@link #version()}, damit
+ * zwischengespeicherte Pfade und Cluster verfallen.
+ */
+public final class BlockCostTable {
+    /**
+     * Einstellbare Aufschläge des Kostenmodells.
+     * @param airBuild      Baukosten für einen Schritt ohne Boden darunter
+     * @param fallingAbove  Zeitaufschlag, wenn über dem Schritt Sand/Kies o.ä. liegt und nachrutscht
+     * @param lavaAdjacent  Zeitaufschlag, wenn neben Körper oder über dem Kopf Lava ist; 0 schaltet
+     *                      die Prüfung der Nachbarzellen ab (Standard, sie kostet pro Schritt neun Zugriffe)
+     */
+    public record Config(int airBuild, int fallingAbove, int lavaAdjacent) {
+        public static final Config DEFAULT = new Config(40, 8, 0);
+
+        /**
+         * Obergrenze je Aufschlag. Damit kostet eine Kante höchstens 1 + 2·255 + 2·200 = 911, bleibt
+         * also unter der Ringgröße 1024 der Bucket-Queue in {@link HierarchicalPathfinder}, und die
+         * Baukosten passen in die oberen 16 Bit von {@link Pathfinder#step}.
+         */
+        public static final int MAX_SURCHARGE = 200;
+
+        public Config {
+            if (airBuild < 0 || fallingAbove < 0 || lavaAdjacent < 0
+                    || airBuild > MAX_SURCHARGE || fallingAbove > MAX_SURCHARGE || lavaAdjacent > MAX_SURCHARGE)
+                throw new IllegalArgumentException("Aufschläge müssen zwischen 0 und " + MAX_SURCHARGE + " liegen");
+        }
+    }
+
+    private static final AtomicInteger version = new AtomicInteger(1);
+    private static volatile BlockCostTable current;
+    private static volatile Config config = Config.DEFAULT;
+
+    private final short[] cells;
+
+    private BlockCostTable(short[] cells) {
+        this.cells = cells;
+    }
+
+    /** Die aktuelle Tabelle; wird neu gebaut, falls sich die Anzahl der States geändert hat. */
+    public static BlockCostTable current() {
+        BlockCostTable t = current;
+        if (t == null || t.cells.length != Block.STATE_IDS.size()) t = rebuild();
+        return t;
+    }
+
+    /** Liest alle registrierten BlockStates neu ein. */
+    public static synchronized BlockCostTable rebuild() {
+        int n = Block.STATE_IDS.size();
+        short[] cells = new short[n];
+        for (int id = 0; id < n; id++) {
+            BlockState bs = Block.STATE_IDS.get(id);
+            cells[id] = bs == null ? CostGrid.EMPTY_FLAGS : compute(bs);
+        }
+        current = new BlockCostTable(cells);
+        version.incrementAndGet();
+        return current;
+    }
+
+    public static Config config() { return config; }
+
+    /** Setzt neue Aufschläge; bereits laufende Suchen behalten ihre Konfiguration. */
+    public static synchronized void configure(Config c) {
+        config = c;
+        version.incrementAndGet();
+    }
+
+    /** Version von Tabelle und Konfiguration zusammen, siehe {@link PathCache.Key}. */
+    public static int version() { return version.get(); }
+
+    public int size() { return cells.length; }
+
+    /**
+     * Flags ({@link #flagsOf}) im unteren und Härte ({@link #hardnessOf}) im
+     * oberen Byte. Unbekannte States werden direkt ausgewertet.
+     */
+    int cell(BlockState bs) {
+        int id = Block.STATE_IDS.getRawId(bs);
+        if (id < 0 || id >= cells.length) return compute(bs);
+        return cells[id];
+    }
+
+    private static short compute(BlockState bs) {
+        int f = flagsOf(bs, EmptyBlockView.INSTANCE, BlockPos.ORIGIN) & 0xFF;
+        int h = hardnessOf(bs, EmptyBlockView.INSTANCE, BlockPos.ORIGIN) & 0xFF;
+        return (short) (f | (h << 8));
+    }
+
+    /** Übersetzt einen BlockState in die Zell-Flags des Kostenmodells. */
+    static byte flagsOf(BlockState bs, BlockView w, BlockPos pos) {
+        int f = 0;
+        if (!bs.getFluidState().isEmpty()) f |= CostGrid.FLUID;
+        if (bs.isAir()) f |= CostGrid.AIR | CostGrid.PASSABLE;
+        else if (bs.getCollisionShape(w, pos).isEmpty()) f |= CostGrid.PASSABLE;
+        if (bs.isOpaque() && bs.getFluidState().isEmpty()) f |= CostGrid.FLOOR;
+        if (bs.getFluidState().isIn(FluidTags.LAVA)) f |= CostGrid.LAVA;
+        if (bs.getBlock() instanceof FallingBlock) f |= CostGrid.FALLING;
+        return (byte) f;
+    }
+
+    static byte hardnessOf(BlockState bs, BlockView w, BlockPos pos) {
+        if (bs.isAir()) return 0;
+        return (byte) Math.max(0, Math.min(255, Math.round(bs.getHardness(w, pos))));
+    }
+}
@@ -0,0 +1,188 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Invertierter Index Blocktyp → Positionen für eine feste Menge beobachteter Blöcke.
+ * Pro Block und Section liegt ein aufsteigend sortiertes short[] der lokalen Indizes
+ * (y·256 + z·16 + x); die Arrays werden nie verändert, sondern ersetzt. Anfragen berühren nur
+ * Sections, die den Block enthalten, und kosten damit in etwa so viel wie es Treffer gibt.
+ * <p>
+ * Geändert wird nur von einem Thread (siehe name.azathoth.BlockIndexer), gelesen von beliebigen.
+ */
+public final class BlockIndex {
+    private final Set<Block> watched;
+    /** Block → Slot in den Puffern von {@link #indexSections}; nach dem Konstruktor unverändert. */
+    private final Map<Block, Integer> slots = new IdentityHashMap<>();
+    /** Pro Slot: Section-Schlüssel ({@link PackedPos#pack}) → lokale Indizes. */
+    private final List<Map<Long, short[]>> sections = new ArrayList<>();
+
+    public BlockIndex(Collection<Block> watched) {
+        this.watched = Collections.unmodifiableSet(new LinkedHashSet<>(watched));
+        for (Block b : this.watched) {
+            slots.put(b, sections.size());
+            sections.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    public Set<Block> watched() { return watched; }
+
+    public boolean isWatched(Block block) { return slots.containsKey(block); }
+
+    /** Paletten-Filter für {@link SectionSnapshot#captureSections(net.minecraft.world.World, long[], java.util.function.Predicate)}. */
+    public boolean matches(BlockState state) { return slots.containsKey(state.getBlock()); }
+
+    /** Anzahl indizierter Positionen von block. */
+    public int count(Block block) {
+        Integer slot = slots.get(block);
+        if (slot == null) return 0;
+        int n = 0;
+        for (short[] local : sections.get(slot).values()) n += local.length;
+        return n;
+    }
+
+    /** Anzahl der Sections, die mindestens einen beobachteten Block enthalten. */
+    public int sectionCount() {
+        Set<Long> keys = new HashSet<>();
+        for (Map<Long, short[]> m : sections) keys.addAll(m.keySet());
+        return keys.size();
+    }
+
+    /**
+     * Ersetzt den Inhalt der Sections keys durch den aus snapshot; Sections, die nicht im
+     * Schnappschuss sind, gelten als leer.
+     */
+    public void indexSections(SectionSnapshot snapshot, long[] keys) {
+        if (slots.isEmpty()) return;
+        short[][] buf = new short[slots.size()][];
+        int[] count = new int[slots.size()];
+        for (long key : keys) {
+            PalettedContainer<BlockState> container = snapshot.section(key);
+            if (container == null) {
+                for (Map<Long, short[]> m : sections) m.remove(key);
+                continue;
+            }
+            Arrays.fill(count, 0);
+            BlockState last = null;
+            Integer slot = null;
+            for (int i = 0; i < 4096; i++) {
+                BlockState bs = container.get(i & 15, i >> 8, (i >> 4) & 15);
+                if (bs != last) {
+                    last = bs;
+                    slot = slots.get(bs.getBlock());
+                }
+                if (slot == null) continue;
+                int s = slot;
+                if (buf[s] == null) buf[s] = new short[64];
+                else if (count[s] == buf[s].length) buf[s] = Arrays.copyOf(buf[s], Math.min(4096, count[s] * 2));
+                buf[s][count[s]++] = (short) i;
+            }
+            for (int s = 0; s < count.length; s++) {
+                if (count[s] == 0) sections.get(s).remove(key);
+                else sections.get(s).put(key, Arrays.copyOf(buf[s], count[s]));
+            }
+        }
+    }
+
+    public void removeSections(long[] keys) {
+        for (Map<Long, short[]> m : sections) {
+            for (long key : keys) m.remove(key);
+        }
+    }
+
+    /** An (x, y, z) steht jetzt block; entfernt die Position bei allen anderen beobachteten Blöcken. */
+    public void blockChanged(int x, int y, int z, Block block) {
+        long key = PackedPos.pack(x >> 4, y >> 4, z >> 4);
+        short local = (short) ((y & 15) << 8 | (z & 15) << 4 | (x & 15));
+        Integer target = slots.get(block);
+        for (int s = 0; s < sections.size(); s++) {
+            Map<Long, short[]> m = sections.get(s);
+            short[] old = m.get(key);
+            int pos = old == null ? -1 : Arrays.binarySearch(old, local);
+            if (target != null && target == s) {
+                if (pos >= 0) continue;
+                if (old == null) {
+                    m.put(key, new short[]{local});
+                    continue;
+                }
+                int at = -pos - 1;
+                short[] grown = new short[old.length + 1];
+                System.arraycopy(old, 0, grown, 0, at);
+                grown[at] = local;
+                System.arraycopy(old, at, grown, at + 1, old.length - at);
+                m.put(key, grown);
+            } else if (pos >= 0) {
+                if (old.length == 1) {
+                    m.remove(key);
+                    continue;
+                }
+                short[] shrunk = new short[old.length - 1];
+                System.arraycopy(old, 0, shrunk, 0, pos);
+                System.arraycopy(old, pos + 1, shrunk, pos, old.length - pos - 1);
+                m.put(key, shrunk);
+            }
+        }
+    }
+
+    /**
+     * Die höchstens n nächsten Positionen von block im Würfel mit Radius radius um origin,
+     * aufsteigend nach Abstand; origin selbst zählt nicht, wie bei {@link BlockSearch#nearest}.
+     */
+    public List<BlockSearch.Hit> nearest(Block block, BlockPos origin, int radius, int n) {
+        Integer slot = slots.get(block);
+        if (slot == null || n <= 0) return List.of();
+        Map<Long, short[]> m = sections.get(slot);
+        int ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+
+        // nur Sections, die den Würfel schneiden, nach Mindestabstand sortiert
+        List<long[]> candidates = new ArrayList<>();
+        for (Map.Entry<Long, short[]> e : m.entrySet()) {
+            long key = e.getKey();
+            int gx = BlockSearch.gap(ox, PackedPos.x(key)), gy = BlockSearch.gap(oy, PackedPos.y(key)),
+                gz = BlockSearch.gap(oz, PackedPos.z(key));
+            if (gx > radius || gy > radius || gz > radius) continue;
+            candidates.add(new long[]{BlockSearch.sq(gx) + BlockSearch.sq(gy) + BlockSearch.sq(gz), key});
+        }
+        candidates.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        PriorityQueue<BlockSearch.Hit> best = new PriorityQueue<>(Math.min(n, 1024), BlockSearch.ORDER.reversed());
+        for (long[] c : candidates) {
+            if (best.size() == n && c[0] > best.peek().dist2()) break;
+            long key = c[1];
+            short[] local = m.get(key);
+            if (local == null) continue; // inzwischen entfernt
+            int bx = PackedPos.x(key) << 4, by = PackedPos.y(key) << 4, bz = PackedPos.z(key) << 4;
+            for (short l : local) {
+                int x = bx + (l & 15), y = by + (l >> 8), z = bz + ((l >> 4) & 15);
+                if (Math.abs(x - ox) > radius || Math.abs(y - oy) > radius || Math.abs(z - oz) > radius) continue;
+                long d2 = BlockSearch.sq(x - ox) + BlockSearch.sq(y - oy) + BlockSearch.sq(z - oz);
+                if (d2 == 0) continue;
+                BlockSearch.offer(best, n, new BlockSearch.Hit(new BlockPos(x, y, z), d2));
+            }
+        }
+        List<BlockSearch.Hit> out = new ArrayList<>(best);
+        out.sort(BlockSearch.ORDER);
+        return out;
+    }
+
+    /** Alle Positionen von block im Würfel mit Radius radius um origin, aufsteigend nach Abstand. */
+    public List<BlockSearch.Hit> within(Block block, BlockPos origin, int radius) {
+        return nearest(block, origin, radius, Integer.MAX_VALUE);
+    }
+}
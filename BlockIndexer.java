@@ -0,0 +1,140 @@
+package name.azathoth;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import qwermotion.azathoth.BlockIndex;
+import qwermotion.azathoth.PackedPos;
+import qwermotion.azathoth.SectionSnapshot;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hält einen {@link BlockIndex} über alle geladenen Chunks aktuell.
+ * Auf dem Client-Thread werden beim Laden eines Chunks nur die Sections kopiert, deren Palette
+ * einen beobachteten Block enthält; ausgewertet wird auf einem eigenen Hintergrund-Thread.
+ * Blockänderungen und entladene Chunks laufen über denselben Thread, also in Ereignisreihenfolge.
+ */
+public final class BlockIndexer implements WorldChangeTracker.Listener {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "BlockIndex");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger pending = new AtomicInteger();
+    /** Geladene Chunks der aktuellen Welt (PackedPos.pack(cx, 0, cz)); geändert nur vom Client-Thread. */
+    private final Set<Long> loadedChunks = ConcurrentHashMap.newKeySet();
+    private volatile World world;
+    private volatile BlockIndex index;
+
+    public BlockIndexer(Collection<Block> watched) {
+        index = new BlockIndex(watched);
+    }
+
+    public BlockIndex index() { return index; }
+
+    public int pending() { return pending.get(); }
+
+    public int chunkCount() { return loadedChunks.size(); }
+
+    /** Ob Anfragen nach block in world aus dem Index beantwortet werden können. */
+    public boolean covers(World w, Block block) {
+        return w == world && index.isWatched(block);
+    }
+
+    /**
+     * Neue Menge beobachteter Blöcke; alle geladenen Chunks werden neu eingelesen.
+     * Muss auf dem Client-Thread laufen.
+     */
+    public void watch(Collection<Block> blocks) {
+        BlockIndex idx = new BlockIndex(blocks);
+        index = idx;
+        World w = world;
+        if (w == null) return;
+        for (long chunk : loadedChunks) indexColumn(w, PackedPos.x(chunk), PackedPos.z(chunk), idx);
+    }
+
+    /**
+     * Wartet, bis alle bis jetzt eingereihten Änderungen im Index angekommen sind.
+     * @return false bei Zeitüberschreitung
+     */
+    public boolean flush(long timeoutMs) {
+        if (pending.get() == 0) return true;
+        try {
+            worker.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void onBlockChanged(World w, BlockPos pos, BlockState state) {
+        worldFor(w);
+        BlockIndex idx = index;
+        if (idx.watched().isEmpty()) return;
+        Block block = state.getBlock();
+        submit(() -> idx.blockChanged(pos.getX(), pos.getY(), pos.getZ(), block));
+    }
+
+    @Override
+    public void onChunkChanged(World w, int cx, int cz, boolean loaded) {
+        if (!loaded) {
+            // Entladen kommt beim Weltwechsel auch noch für die alte Welt
+            if (w != world) return;
+            loadedChunks.remove(PackedPos.pack(cx, 0, cz));
+            BlockIndex idx = index;
+            long[] keys = columnKeys(w, cx, cz);
+            submit(() -> idx.removeSections(keys));
+            return;
+        }
+        worldFor(w);
+        loadedChunks.add(PackedPos.pack(cx, 0, cz));
+        indexColumn(w, cx, cz, index);
+    }
+
+    private void indexColumn(World w, int cx, int cz, BlockIndex idx) {
+        if (idx.watched().isEmpty()) return;
+        long[] keys = columnKeys(w, cx, cz);
+        SectionSnapshot snapshot = SectionSnapshot.captureSections(w, keys, idx::matches);
+        submit(() -> idx.indexSections(snapshot, keys));
+    }
+
+    /** Bei Welt- oder Dimensionswechsel mit leerem Index neu anfangen. */
+    private void worldFor(World w) {
+        if (w == world) return;
+        loadedChunks.clear();
+        index = new BlockIndex(index.watched());
+        world = w;
+    }
+
+    private static long[] columnKeys(World w, int cx, int cz) {
+        int minSy = w.getBottomSectionCoord(), maxSy = w.getTopSectionCoord() - 1;
+        long[] keys = new long[maxSy - minSy + 1];
+        for (int sy = minSy; sy <= maxSy; sy++) keys[sy - minSy] = PackedPos.pack(cx, sy, cz);
+        return keys;
+    }
+
+    private void submit(Runnable task) {
+        pending.incrementAndGet();
+        worker.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+}
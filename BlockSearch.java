@@ -0,0 +1,103 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * k-nächste-Blöcke-Suche für /next_blocks und /find_path_nearest.
+ * Der Schnappschuss enthält idealerweise nur Sections, deren Palette einen Treffer enthalten kann
+ * ({@link SectionSnapshot#captureCube(net.minecraft.world.World, BlockPos, int, Predicate)}).
+ * Die Sections werden nach ihrem kleinsten Abstand zum Ursprung abgearbeitet; sobald k Treffer
+ * vorliegen und keine weitere Section näher liegen kann als der k-te, ist die Suche fertig.
+ */
+public final class BlockSearch {
+    /** Ein Treffer mit quadriertem euklidischem Abstand zum Ursprung. */
+    public record Hit(BlockPos pos, long dist2) {}
+
+    static final Comparator<Hit> ORDER = Comparator.comparingLong(Hit::dist2)
+            .thenComparingInt(h -> h.pos().getY())
+            .thenComparingInt(h -> h.pos().getX())
+            .thenComparingInt(h -> h.pos().getZ());
+
+    private BlockSearch() {}
+
+    /**
+     * Die höchstens n nächsten Blöcke im Würfel mit Radius radius um origin, für die match gilt,
+     * aufsteigend nach Abstand. origin selbst zählt nicht (der Spieler steht darin).
+     */
+    public static List<Hit> nearest(SectionSnapshot snapshot, BlockPos origin, int radius,
+                                    Predicate<BlockState> match, int n) {
+        if (n <= 0) return List.of();
+        int ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        long[] keys = snapshot.sectionKeys();
+        // (Mindestabstand² << 32) | Index; die Sections liegen im kopierten Würfel, der Abstand² passt in 31 Bit
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            long d2 = sq(gap(ox, PackedPos.x(key))) + sq(gap(oy, PackedPos.y(key))) + sq(gap(oz, PackedPos.z(key)));
+            order[i] = d2 << 32 | i;
+        }
+        Arrays.sort(order);
+
+        // Max-Heap: der Kopf ist der bisher schlechteste der n besten Treffer
+        PriorityQueue<Hit> best = new PriorityQueue<>(n, ORDER.reversed());
+        for (long o : order) {
+            if (best.size() == n && (o >>> 32) > best.peek().dist2()) break;
+            long key = keys[(int) o];
+            PalettedContainer<BlockState> container = snapshot.section(key);
+            int bx = PackedPos.x(key) << 4, by = PackedPos.y(key) << 4, bz = PackedPos.z(key) << 4;
+            int x0 = Math.max(bx, ox - radius), x1 = Math.min(bx + 15, ox + radius);
+            int y0 = Math.max(by, oy - radius), y1 = Math.min(by + 15, oy + radius);
+            int z0 = Math.max(bz, oz - radius), z1 = Math.min(bz + 15, oz + radius);
+            BlockState last = null;
+            boolean lastMatch = false;
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    for (int x = x0; x <= x1; x++) {
+                        BlockState bs = container.get(x & 15, y & 15, z & 15);
+                        if (bs != last) {
+                            last = bs;
+                            lastMatch = match.test(bs);
+                        }
+                        if (!lastMatch) continue;
+                        long d2 = sq(x - ox) + sq(y - oy) + sq(z - oz);
+                        if (d2 == 0) continue;
+                        offer(best, n, new Hit(new BlockPos(x, y, z), d2));
+                    }
+                }
+            }
+        }
+        List<Hit> out = new ArrayList<>(best);
+        out.sort(ORDER);
+        return out;
+    }
+
+    /** Nimmt hit in den Max-Heap der n besten auf, falls er besser ist als der bisher schlechteste. */
+    static void offer(PriorityQueue<Hit> best, int n, Hit hit) {
+        if (best.size() < n) {
+            best.add(hit);
+        } else if (ORDER.compare(hit, best.peek()) < 0) {
+            best.poll();
+            best.add(hit);
+        }
+    }
+
+    /** Abstand von c zum Block-Intervall der Section, 0 wenn c darin liegt. */
+    static int gap(int c, int section) {
+        int min = section << 4;
+        return c < min ? min - c : Math.max(0, c - (min + 15));
+    }
+
+    /** In long gerechnet, damit weit entfernte Sections nicht überlaufen. */
+    static long sq(int v) {
+        return (long) v * v;
+    }
+}
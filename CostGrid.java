@@ -0,0 +1,209 @@
+package qwermotion.azathoth;
+
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Vorab abgetastetes Kostengitter für den Pathfinder.
+ * Jede Chunk-Section (16³) wird beim ersten Zugriff einmal komplett aus der Welt gelesen
+ * und in zwei kompakte byte-Arrays übersetzt: Zell-Flags (Flüssigkeit, begehbar, Luft,
+ * tragender Boden) und die gerundete Härte. Danach läuft die Suche nur noch gegen diese
+ * Arrays, jeder Block wird pro Suche genau einmal aufgelöst. Flags und Härte eines States
+ * kommen aus der {@link BlockCostTable}, die Aufschläge aus deren {@link BlockCostTable.Config},
+ * die beim Anlegen des Gitters festgehalten wird.
+ * <p>
+ * Mit einem eigenen Sampler und einer fest übergebenen Config braucht das Gitter (wie die Suche
+ * selbst) keine Minecraft-Klassen, siehe {@link SyntheticWorlds}.
+ */
+public final class CostGrid {
+    public static final int FLUID    = 1;
+    public static final int PASSABLE = 2;
+    public static final int AIR      = 4;
+    public static final int FLOOR    = 8;
+    /** Rutscht nach, wenn darunter abgebaut wird (Sand, Kies, ...). */
+    public static final int FALLING  = 16;
+    public static final int LAVA     = 32;
+
+    /** Zellwert für Luft/ungeladenes Gebiet: begehbar, aber ohne Boden. */
+    static final byte EMPTY_FLAGS = (byte) (AIR | PASSABLE);
+
+    /** Füllt eine Section (flags/hardness, Index (y<<8)|(z<<4)|x) aus einer Blockquelle. */
+    public interface Sampler {
+        void sample(int sx, int sy, int sz, byte[] flags, byte[] hardness);
+
+        /** Verwirft zwischengespeicherte Daten der Section, damit das nächste sample frisch liest. */
+        default void invalidate(int sx, int sy, int sz) {}
+    }
+
+    private final Sampler sampler;
+    private final BlockCostTable.Config config;
+    private final LongIndexMap index = new LongIndexMap(256);
+    private long[] keys = new long[64];
+    private byte[][] flags = new byte[64][];
+    private byte[][] hardness = new byte[64][];
+    private int sections;
+
+    // zuletzt benutzte Section, die meisten Zugriffe liegen in derselben
+    private long lastKey = Long.MIN_VALUE;
+    private byte[] lastFlags, lastHardness;
+
+    /** Mit der aktuell eingestellten Config ({@link BlockCostTable#config()}). */
+    public CostGrid(Sampler sampler) {
+        this(sampler, BlockCostTable.config());
+    }
+
+    public CostGrid(Sampler sampler, BlockCostTable.Config config) {
+        this.sampler = sampler;
+        this.config = config;
+    }
+
+    public static CostGrid of(World world) {
+        return new CostGrid(new WorldSampler(world));
+    }
+
+    /** Sampler, der direkt aus der geladenen Welt liest (nur auf dem Client-Thread, sonst {@link SnapshotSampler}). */
+    public static Sampler sampler(World world) {
+        return new WorldSampler(world);
+    }
+
+    /** Anzahl der bisher abgetasteten Sections. */
+    public int sampledSections() { return sections; }
+
+    /** Alle bisher abgetasteten Sections als gepackte Section-Koordinaten ({@link PackedPos}). */
+    public long[] sampledSectionKeys() {
+        return Arrays.copyOf(keys, sections);
+    }
+
+    public int flags(int x, int y, int z) {
+        load(x, y, z);
+        return lastFlags[local(x, y, z)];
+    }
+
+    /** Gerundete Härte (0..255) des Blocks, 0 für Luft. */
+    public int hardness(int x, int y, int z) {
+        load(x, y, z);
+        return lastHardness[local(x, y, z)] & 0xFF;
+    }
+
+    /**
+     * Tastet die Section mit (x,y,z) erneut ab und meldet jede Zelle, deren Flags oder Härte
+     * sich geändert haben, als gepackte Position. Noch nie abgetastete Sections werden
+     * übersprungen, sie werden beim ersten Zugriff ohnehin frisch gelesen.
+     */
+    public void refresh(int x, int y, int z, LongConsumer changed) {
+        int sx = x >> 4, sy = y >> 4, sz = z >> 4;
+        sampler.invalidate(sx, sy, sz);
+        int id = index.get(PackedPos.pack(sx, sy, sz));
+        if (id < 0) return;
+        byte[] f = new byte[4096];
+        byte[] h = new byte[4096];
+        sampler.sample(sx, sy, sz, f, h);
+        byte[] oldF = flags[id], oldH = hardness[id];
+        flags[id] = f;
+        hardness[id] = h;
+        lastKey = Long.MIN_VALUE;
+        // erst nach dem Austausch melden, damit Listener schon die neuen Werte sehen
+        for (int i = 0; i < 4096; i++) {
+            if (f[i] != oldF[i] || h[i] != oldH[i])
+                changed.accept(PackedPos.pack((sx << 4) | (i & 15), (sy << 4) | (i >> 8), (sz << 4) | ((i >> 4) & 15)));
+        }
+    }
+
+    /** Tastet alle Sections ab, die die Raute |dx|+|dy|+|dz| <= radius um (cx,cy,cz) schneiden. */
+    public void prefetch(int cx, int cy, int cz, int radius) {
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++)
+            for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++)
+                for (int sy = (cy - radius) >> 4; sy <= (cy + radius) >> 4; sy++) {
+                    int dx = distToRange(cx, sx << 4);
+                    int dy = distToRange(cy, sy << 4);
+                    int dz = distToRange(cz, sz << 4);
+                    if (dx + dy + dz <= radius) load(sx << 4, sy << 4, sz << 4);
+                }
+    }
+
+    private static int distToRange(int c, int min) {
+        return c < min ? min - c : Math.max(0, c - (min + 15));
+    }
+
+    /**
+     * Alle Versätze zu (x,y,z), deren Zellen {@link #stepCost} liest: die Zelle selbst, Boden
+     * und Kopf, die Lava-Nachbarn neben Füßen und Kopf sowie der Block über dem Kopf. Wer
+     * Kosten nach einer Blockänderung neu bewertet, muss alle Ziele p - READS prüfen.
+     */
+    static final int[][] STEP_READS = {
+            {0, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 2, 0},
+            {1, 0, 0}, {-1, 0, 0}, {0, 0, 1}, {0, 0, -1},
+            {1, 1, 0}, {-1, 1, 0}, {0, 1, 1}, {0, 1, -1}
+    };
+
+    /**
+     * Kosten für das Betreten von (x,y,z), gepackt wie in {@link Pathfinder#step},
+     * oder {@link Pathfinder#INVALID}.
+     */
+    int stepCost(int x, int y, int z, boolean isGoal) {
+        int f = flags(x, y, z);
+
+        // 1) Fluss- und Lavablöcke nie betreten
+        if ((f & FLUID) != 0) return Pathfinder.INVALID;
+        int hardHere = lastHardness[local(x, y, z)] & 0xFF;
+
+        // 2) Wenn ein Block über np steht, muss er zuerst abgebaut werden:
+        int timeAbove = 0;
+        if (!isGoal) {
+            int above = flags(x, y + 1, z);
+            if ((above & AIR) == 0) {
+                timeAbove = Math.max(1, hardness(x, y + 1, z));
+                if ((above & FALLING) != 0) timeAbove += config.fallingAbove();
+            }
+        }
+        if (config.lavaAdjacent() > 0 && lavaNear(x, y, z)) timeAbove += config.lavaAdjacent();
+
+        if ((f & PASSABLE) != 0) {
+            // Luft/Raum: Baukosten, wenn kein Boden
+            int buildCost = (flags(x, y - 1, z) & FLOOR) != 0 ? 0 : config.airBuild();
+            return Pathfinder.step(buildCost, timeAbove);
+        }
+        // Solider Block: Abbaukosten plus timeAbove
+        return Pathfinder.step(0, Math.max(4, hardHere) + timeAbove);
+    }
+
+    /** Lava seitlich neben Füßen oder Kopf oder direkt über dem Kopf? */
+    private boolean lavaNear(int x, int y, int z) {
+        for (int dy = 0; dy <= 1; dy++) {
+            if (((flags(x + 1, y + dy, z) | flags(x - 1, y + dy, z)
+                    | flags(x, y + dy, z + 1) | flags(x, y + dy, z - 1)) & LAVA) != 0) return true;
+        }
+        return (flags(x, y + 2, z) & LAVA) != 0;
+    }
+
+    private static int local(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private void load(int x, int y, int z) {
+        int sx = x >> 4, sy = y >> 4, sz = z >> 4;
+        long key = PackedPos.pack(sx, sy, sz);
+        if (key == lastKey) return;
+        int id = index.get(key);
+        if (id < 0) {
+            if (sections == flags.length) {
+                keys = Arrays.copyOf(keys, sections * 2);
+                flags = Arrays.copyOf(flags, sections * 2);
+                hardness = Arrays.copyOf(hardness, sections * 2);
+            }
+            byte[] f = new byte[4096];
+            byte[] h = new byte[4096];
+            sampler.sample(sx, sy, sz, f, h);
+            id = sections++;
+            keys[id] = key;
+            flags[id] = f;
+            hardness[id] = h;
+            index.put(key, id);
+        }
+        lastKey = key;
+        lastFlags = flags[id];
+        lastHardness = hardness[id];
+    }
+}
@@ -0,0 +1,82 @@
+package name.azathoth;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Unveränderlicher Spielzustand, am Ende jedes Client-Ticks erzeugt und veröffentlicht.
+ * Lese-Endpunkte bedienen sich hier statt an mc.player/mc.world; das ist von beliebig vielen
+ * HTTP-Threads aus sicher und innerhalb eines Ticks konsistent. Unveränderte Teile
+ * (Inventar, Blickziel, ...) werden vom vorigen Tick übernommen statt neu angelegt.
+ *
+ * @param lookingBlock Block im Fadenkreuz (5 Blöcke Reichweite), null wenn keiner
+ */
+public record GameState(long tick, Position position, Velocity velocity, int selectedSlot,
+                        List<Slot> inventory, LookedAt lookingBlock) {
+
+    /** Wie /position; look_x/look_y sind Yaw und Pitch. */
+    public record Position(double x, double y, double z, double look_x, double look_y, double look_z) {}
+
+    public record Velocity(double x, double y, double z) {}
+
+    /** Ein Slot des Hauptinventars; item null bei leerem Slot (fehlt dann im JSON). */
+    public record Slot(int slot, String item, int count) {}
+
+    public record LookedAt(int x, int y, int z, String block) {}
+
+    /** Muss auf dem Client-Thread laufen; null ohne Spieler oder Welt. */
+    static GameState capture(MinecraftClient mc, long tick, GameState previous) {
+        ClientPlayerEntity player = mc.player;
+        if (player == null || mc.world == null) return null;
+
+        Vec3d pos = player.getPos();
+        Position position = new Position(pos.x, pos.y, pos.z, player.getYaw(), player.getPitch(), 0);
+        if (previous != null && position.equals(previous.position())) position = previous.position();
+
+        Vec3d v = player.getVelocity();
+        Velocity velocity = new Velocity(v.x, v.y, v.z);
+        if (previous != null && velocity.equals(previous.velocity())) velocity = previous.velocity();
+
+        List<Slot> inventory = captureInventory(player, previous == null ? null : previous.inventory());
+
+        LookedAt looking = null;
+        HitResult hit = player.raycast(5.0, 1.0f, false);
+        if (hit instanceof BlockHitResult bhr) {
+            BlockPos bp = bhr.getBlockPos();
+            String block = Registries.BLOCK.getId(mc.world.getBlockState(bp).getBlock()).toString();
+            looking = new LookedAt(bp.getX(), bp.getY(), bp.getZ(), block);
+            if (previous != null && looking.equals(previous.lookingBlock())) looking = previous.lookingBlock();
+        }
+
+        return new GameState(tick, position, velocity, player.getInventory().selectedSlot, inventory, looking);
+    }
+
+    /** Neue Liste nur, wenn sich ein Slot geändert hat; unveränderte Slots werden wiederverwendet. */
+    private static List<Slot> captureInventory(ClientPlayerEntity player, List<Slot> previous) {
+        var main = player.getInventory().main;
+        boolean same = previous != null && previous.size() == main.size();
+        Slot[] slots = new Slot[main.size()];
+        for (int i = 0; i < slots.length; i++) {
+            ItemStack stack = main.get(i);
+            String item = stack.isEmpty() ? null : Registries.ITEM.getId(stack.getItem()).toString();
+            int count = stack.isEmpty() ? 0 : stack.getCount();
+            Slot old = previous != null && i < previous.size() ? previous.get(i) : null;
+            if (old != null && count == old.count() && Objects.equals(item, old.item())) {
+                slots[i] = old;
+            } else {
+                slots[i] = new Slot(i, item, count);
+                same = false;
+            }
+        }
+        return same ? previous : List.of(slots);
+    }
+}
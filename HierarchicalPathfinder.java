@@ -0,0 +1,557 @@
+package qwermotion.azathoth;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Hierarchische Pfadsuche (HPA*) für weite Strecken.
+ * Jede Chunk-Section (16³) ist ein Cluster. Auf jeder Fläche zwischen zwei Clustern werden
+ * wenige Übergänge (Portale) gewählt: je zusammenhängendem Bereich frei begehbarer
+ * Zellpaare eines, sonst das günstigste Paar. Gesucht wird zuerst im abstrakten Graphen
+ * aus Portalen, danach werden die Teilstücke innerhalb der Cluster verfeinert.
+ *
+ * Portale und Kosten innerhalb eines Clusters werden über Anfragen hinweg gecacht.
+ * Geänderte Sections werden vom Client-Thread nur vorgemerkt; die nächste Anfrage verwirft
+ * dann den betroffenen Cluster und seine Nachbarn, bevor sie sucht. Anfragen selbst laufen
+ * nacheinander.
+ */
+public final class HierarchicalPathfinder {
+    static final int MAX_PORTALS_PER_FACE = 6;
+    static final int LONG_ENTRANCE = 6;
+    static final int MAX_ABSTRACT_EXPANSIONS = 200_000;
+    static final int MAX_CACHED_CLUSTERS = 20_000;
+
+    public record Result(Pathfinder.Path path, List<List<Integer>> waypoints,
+                         int abstractNodes, long abstractExpanded) {}
+
+    /** Portalpaare (a im unteren, b im oberen Cluster) je Fläche; Index = Achse 0:x 1:y 2:z. */
+    @SuppressWarnings("unchecked")
+    private final Map<Long, long[]>[] faces = new Map[] { new HashMap<>(), new HashMap<>(), new HashMap<>() };
+    private final Map<Long, Cluster> clusters = new HashMap<>();
+    /** Vorgemerkte geänderte Sections, abgearbeitet zu Beginn jeder Anfrage. */
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final Supplier<? extends CostGrid.Sampler> samplers;
+
+    /** Ein Cluster: seine Portalzellen, deren Partner jenseits der Fläche und gecachte Innenkosten. */
+    private static final class Cluster {
+        final long[] portals;
+        final long[] partners;
+        final Map<Long, double[]> intra = new HashMap<>();
+
+        Cluster(long[] portals, long[] partners) {
+            this.portals = portals;
+            this.partners = partners;
+        }
+    }
+
+    public HierarchicalPathfinder(CostGrid.Sampler sampler) {
+        this(() -> sampler);
+    }
+
+    /** Legt für jede Anfrage einen neuen Sampler an, z.B. einen {@link SnapshotSampler} pro Suche. */
+    public HierarchicalPathfinder(Supplier<? extends CostGrid.Sampler> samplers) {
+        this.samplers = samplers;
+    }
+
+    public synchronized int cachedClusters() { return clusters.size(); }
+
+    /** Eine Section hat sich geändert; darf von jedem Thread aus aufgerufen werden. */
+    public void onSectionChanged(int sx, int sy, int sz) {
+        dirty.add(PackedPos.pack(sx, sy, sz));
+    }
+
+    /** Ein Chunk wurde geladen oder entladen: alle Sections der Spalte vormerken. */
+    public void onChunkChanged(int cx, int cz, int minSy, int maxSy) {
+        for (int sy = minSy; sy <= maxSy; sy++) onSectionChanged(cx, sy, cz);
+    }
+
+    public synchronized void clear() {
+        dirty.clear();
+        for (Map<Long, long[]> f : faces) f.clear();
+        clusters.clear();
+    }
+
+    /** Verwirft die vorgemerkten Sections samt ihrer Nachbarn, siehe {@link #invalidate}. */
+    private void applyChanges() {
+        if (clusters.size() > MAX_CACHED_CLUSTERS) {
+            clear();
+            return;
+        }
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            long key = it.next();
+            it.remove();
+            invalidate(PackedPos.x(key), PackedPos.y(key), PackedPos.z(key));
+        }
+    }
+
+    /**
+     * Schrittkosten lesen Boden, Kopf, den Block darüber und Lava-Nachbarn
+     * ({@link CostGrid#STEP_READS}), eine Änderung reicht also in die sechs Nachbar-Sections,
+     * auch in die darunter. Verworfen werden deren Flächen und alle Cluster, die Portale auf
+     * einer davon haben oder deren Innenkosten die Section lesen.
+     */
+    private void invalidate(int sx, int sy, int sz) {
+        int[][] around = {{0, 0, 0}, {1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+        for (int[] d : around) {
+            int x = sx + d[0], y = sy + d[1], z = sz + d[2];
+            for (int axis = 0; axis < 3; axis++) {
+                int ox = axis == 0 ? 1 : 0, oy = axis == 1 ? 1 : 0, oz = axis == 2 ? 1 : 0;
+                dropFace(axis, x, y, z, ox, oy, oz);
+                dropFace(axis, x - ox, y - oy, z - oz, ox, oy, oz);
+            }
+        }
+    }
+
+    /** Verwirft die Fläche zwischen (x,y,z) und ihrem Nachbarn in +axis samt beider Cluster. */
+    private void dropFace(int axis, int x, int y, int z, int ox, int oy, int oz) {
+        faces[axis].remove(PackedPos.pack(x, y, z));
+        clusters.remove(PackedPos.pack(x, y, z));
+        clusters.remove(PackedPos.pack(x + ox, y + oy, z + oz));
+    }
+
+    /**
+     * Sucht einen Pfad von start nach goal.
+     * @param maxRadius Manhattan-Radius um start, in dem Portale betrachtet werden
+     * @param refine    Anzahl abstrakter Teilstücke, die zu Blockpfaden verfeinert werden;
+     *                  der Rest wird als Wegpunkte zurückgegeben (negativ = alle)
+     * @return null, wenn kein Pfad gefunden wurde
+     */
+    public synchronized Result findPath(BlockPos start, BlockPos goal, int maxRadius, int refine) {
+        applyChanges();
+        CostGrid grid = new CostGrid(samplers.get());
+        long s = PackedPos.pack(start.getX(), start.getY(), start.getZ());
+        long t = PackedPos.pack(goal.getX(), goal.getY(), goal.getZ());
+        long cs = sectionOf(s), cg = sectionOf(t);
+        LocalSearch local = new LocalSearch();
+
+        // Start an die Portale seines Clusters, Portale des Ziel-Clusters ans Ziel anbinden
+        Cluster startCluster = cluster(grid, cs);
+        local.forward(grid, cs, s, t, Long.MIN_VALUE, null);
+        double[] fromStart = new double[startCluster.portals.length];
+        for (int i = 0; i < fromStart.length; i++) fromStart[i] = local.dist(startCluster.portals[i]);
+        double startToGoal = cs == cg ? local.dist(t) : Double.POSITIVE_INFINITY;
+
+        Cluster goalCluster = cluster(grid, cg);
+        local.backward(grid, cg, t);
+        Map<Long, Double> toGoal = new HashMap<>();
+        for (long p : goalCluster.portals) {
+            double d = local.dist(p);
+            if (d < Double.POSITIVE_INFINITY) toGoal.put(p, d);
+        }
+
+        // Abstrakte A*-Suche über Portale
+        Pathfinder.Nodes nodes = new Pathfinder.Nodes(1 << 10);
+        NodeHeap open = new NodeHeap(1 << 10);
+        int startId = nodes.idOf(s);
+        nodes.g[startId] = 0;
+        open.insertOrUpdate(startId, Pathfinder.heuristic(s, t), 0);
+        long expanded = 0;
+        int found = -1;
+        while (!open.isEmpty() && expanded++ < MAX_ABSTRACT_EXPANSIONS) {
+            int cur = open.poll();
+            long cp = nodes.pos[cur];
+            if (cp == t) { found = cur; break; }
+            double g0 = nodes.g[cur];
+            if (cur == startId) {
+                for (int i = 0; i < fromStart.length; i++)
+                    relax(nodes, open, cur, startCluster.portals[i], g0 + fromStart[i], t, s, maxRadius);
+                relax(nodes, open, cur, t, g0 + startToGoal, t, s, maxRadius);
+                if (!isPortal(startCluster, s)) continue; // sonst zusätzlich als Portal expandieren
+            }
+            long cc = sectionOf(cp);
+            Cluster c = cluster(grid, cc);
+            double[] intra = c.intra.computeIfAbsent(cp, p -> {
+                local.forward(grid, cc, p, Long.MIN_VALUE, Long.MIN_VALUE, c.portals);
+                double[] d = new double[c.portals.length];
+                for (int i = 0; i < d.length; i++) d[i] = local.dist(c.portals[i]);
+                return d;
+            });
+            for (int i = 0; i < c.portals.length; i++) {
+                if (c.portals[i] == cp) {
+                    long q = c.partners[i];
+                    int step = grid.stepCost(PackedPos.x(q), PackedPos.y(q), PackedPos.z(q), q == t);
+                    if (step != Pathfinder.INVALID)
+                        relax(nodes, open, cur, q, g0 + 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step), t, s, maxRadius);
+                } else {
+                    relax(nodes, open, cur, c.portals[i], g0 + intra[i], t, s, maxRadius);
+                }
+            }
+            if (cc == cg) {
+                Double d = toGoal.get(cp);
+                if (d != null) relax(nodes, open, cur, t, g0 + d, t, s, maxRadius);
+            }
+        }
+        if (found < 0) return null;
+
+        List<Long> abstractPath = new ArrayList<>();
+        for (int n = found; n >= 0; n = nodes.parent[n]) abstractPath.add(nodes.pos[n]);
+        Collections.reverse(abstractPath);
+        return refine(grid, local, abstractPath, s, t, refine, nodes.size, expanded);
+    }
+
+    private void relax(Pathfinder.Nodes nodes, NodeHeap open, int from, long to, double ng,
+                       long goal, long start, int maxRadius) {
+        if (ng == Double.POSITIVE_INFINITY || PackedPos.manhattan(start, to) > maxRadius) return;
+        int id = nodes.idOf(to);
+        if (ng < nodes.g[id]) {
+            nodes.g[id] = ng;
+            nodes.parent[id] = from;
+            double h = Pathfinder.heuristic(to, goal);
+            open.insertOrUpdate(id, ng + h, h);
+        }
+    }
+
+    /** Verfeinert die ersten refine Teilstücke zu Blockpfaden, der Rest bleibt als Wegpunkte. */
+    private Result refine(CostGrid grid, LocalSearch local, List<Long> abstractPath, long s, long t,
+                          int refine, int abstractNodes, long expanded) {
+        List<Long> cells = new ArrayList<>();
+        cells.add(s);
+        int segments = abstractPath.size() - 1;
+        int limit = refine < 0 ? segments : Math.min(refine, segments);
+        for (int i = 0; i < limit; i++) {
+            long a = abstractPath.get(i), b = abstractPath.get(i + 1);
+            if (sectionOf(a) != sectionOf(b)) {
+                cells.add(b); // Übergang über eine Cluster-Fläche ist genau ein Schritt
+            } else if (b == t) {
+                local.backward(grid, sectionOf(t), t);
+                if (local.dist(a) == Double.POSITIVE_INFINITY) { limit = i; break; } // Welt hat sich während der Suche geändert
+                for (long c = local.next(a); c != Long.MIN_VALUE; c = local.next(c)) cells.add(c);
+            } else {
+                local.forward(grid, sectionOf(a), a, t, b, null);
+                if (local.dist(b) == Double.POSITIVE_INFINITY) { limit = i; break; }
+                List<Long> seg = new ArrayList<>();
+                for (long c = b; c != a; c = local.prev(c)) seg.add(c);
+                Collections.reverse(seg);
+                cells.addAll(seg);
+            }
+        }
+
+        List<List<Integer>> positions = new ArrayList<>();
+        int build = 0, time = 0;
+        double total = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            long c = cells.get(i);
+            positions.add(Arrays.asList(PackedPos.x(c), PackedPos.y(c), PackedPos.z(c)));
+            if (i == 0) continue;
+            int step = grid.stepCost(PackedPos.x(c), PackedPos.y(c), PackedPos.z(c), c == t);
+            build += Pathfinder.stepBuild(step);
+            time += Pathfinder.stepTime(step);
+            total += 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step);
+        }
+        List<List<Integer>> waypoints = new ArrayList<>();
+        for (int i = limit + 1; i < abstractPath.size(); i++) {
+            long c = abstractPath.get(i);
+            waypoints.add(Arrays.asList(PackedPos.x(c), PackedPos.y(c), PackedPos.z(c)));
+        }
+        return new Result(new Pathfinder.Path(positions, build, time, total), waypoints, abstractNodes, expanded);
+    }
+
+    private static boolean isPortal(Cluster c, long p) {
+        for (long q : c.portals) if (q == p) return true;
+        return false;
+    }
+
+    private static long sectionOf(long p) {
+        return PackedPos.pack(PackedPos.x(p) >> 4, PackedPos.y(p) >> 4, PackedPos.z(p) >> 4);
+    }
+
+    // ------------------------------------------------------------------ Cluster-Aufbau
+
+    private Cluster cluster(CostGrid grid, long section) {
+        Cluster c = clusters.get(section);
+        if (c != null) return c;
+        int sx = PackedPos.x(section), sy = PackedPos.y(section), sz = PackedPos.z(section);
+        List<Long> portals = new ArrayList<>(), partners = new ArrayList<>();
+        for (int axis = 0; axis < 3; axis++) {
+            // eigene Fläche in +Achse: wir sind die a-Seite
+            long[] up = face(grid, axis, sx, sy, sz);
+            for (int i = 0; i < up.length; i += 2) { portals.add(up[i]); partners.add(up[i + 1]); }
+            // Fläche des Nachbarn in -Achse: wir sind die b-Seite
+            long[] down = face(grid, axis, sx - (axis == 0 ? 1 : 0), sy - (axis == 1 ? 1 : 0), sz - (axis == 2 ? 1 : 0));
+            for (int i = 0; i < down.length; i += 2) { portals.add(down[i + 1]); partners.add(down[i]); }
+        }
+        c = new Cluster(portals.stream().mapToLong(Long::longValue).toArray(),
+                partners.stream().mapToLong(Long::longValue).toArray());
+        clusters.put(section, c);
+        return c;
+    }
+
+    /** Portalpaare auf der Fläche zwischen Section (sx,sy,sz) und ihrem Nachbarn in +axis. */
+    private long[] face(CostGrid grid, int axis, int sx, int sy, int sz) {
+        long key = PackedPos.pack(sx, sy, sz);
+        long[] cached = faces[axis].get(key);
+        if (cached != null) return cached;
+
+        long[] a = new long[256], b = new long[256];
+        int[] cost = new int[256]; // -1 = in keiner Richtung passierbar, 0 = frei begehbar
+        for (int u = 0; u < 16; u++) {
+            for (int v = 0; v < 16; v++) {
+                int i = u * 16 + v;
+                int ax, ay, az;
+                if (axis == 0)      { ax = (sx << 4) + 15; ay = (sy << 4) + u; az = (sz << 4) + v; }
+                else if (axis == 1) { ax = (sx << 4) + u; ay = (sy << 4) + 15; az = (sz << 4) + v; }
+                else                { ax = (sx << 4) + u; ay = (sy << 4) + v; az = (sz << 4) + 15; }
+                int bx = ax + (axis == 0 ? 1 : 0), by = ay + (axis == 1 ? 1 : 0), bz = az + (axis == 2 ? 1 : 0);
+                a[i] = PackedPos.pack(ax, ay, az);
+                b[i] = PackedPos.pack(bx, by, bz);
+                int ab = grid.stepCost(bx, by, bz, false), ba = grid.stepCost(ax, ay, az, false);
+                if (ab == Pathfinder.INVALID && ba == Pathfinder.INVALID) cost[i] = -1;
+                else if (ab == Pathfinder.INVALID || ba == Pathfinder.INVALID) cost[i] = Integer.MAX_VALUE;
+                else cost[i] = Pathfinder.stepBuild(ab) + Pathfinder.stepTime(ab) + Pathfinder.stepBuild(ba) + Pathfinder.stepTime(ba);
+            }
+        }
+
+        // zusammenhängende frei begehbare Bereiche suchen, je Bereich ein Portal möglichst in der Mitte
+        List<int[]> groups = new ArrayList<>(); // {größe, mitte, ende1, ende2}
+        boolean[] seen = new boolean[256];
+        int[] queue = new int[256];
+        for (int i = 0; i < 256; i++) {
+            if (seen[i] || cost[i] != 0) continue;
+            int head = 0, tail = 0;
+            queue[tail++] = i;
+            seen[i] = true;
+            long su = 0, sv = 0;
+            while (head < tail) {
+                int c = queue[head++];
+                su += c / 16;
+                sv += c % 16;
+                int cu = c / 16, cv = c % 16;
+                int[][] nb = {{cu + 1, cv}, {cu - 1, cv}, {cu, cv + 1}, {cu, cv - 1}};
+                for (int[] n : nb) {
+                    if (n[0] < 0 || n[0] > 15 || n[1] < 0 || n[1] > 15) continue;
+                    int j = n[0] * 16 + n[1];
+                    if (!seen[j] && cost[j] == 0) { seen[j] = true; queue[tail++] = j; }
+                }
+            }
+            double mu = (double) su / tail, mv = (double) sv / tail;
+            int rep = queue[0];
+            double best = Double.MAX_VALUE;
+            for (int k = 0; k < tail; k++) {
+                double d = Math.abs(queue[k] / 16 - mu) + Math.abs(queue[k] % 16 - mv);
+                if (d < best) { best = d; rep = queue[k]; }
+            }
+            // lange Bereiche bekommen zusätzlich Portale an beiden Enden, sonst werden Pfade zur Mitte gezogen
+            int e1 = rep, e2 = rep;
+            if (tail >= LONG_ENTRANCE) {
+                e1 = farthest(queue, tail, rep);
+                e2 = farthest(queue, tail, e1);
+            }
+            groups.add(new int[] {tail, rep, e1, e2});
+        }
+        groups.sort((x, y) -> Integer.compare(y[0], x[0]));
+
+        List<Integer> chosen = new ArrayList<>();
+        for (int k = 0; k < groups.size() && chosen.size() < MAX_PORTALS_PER_FACE; k++) chosen.add(groups.get(k)[1]);
+        for (int k = 0; k < groups.size() && chosen.size() + 2 <= MAX_PORTALS_PER_FACE; k++) {
+            int[] g = groups.get(k);
+            if (g[0] < LONG_ENTRANCE) break;
+            if (!chosen.contains(g[2])) chosen.add(g[2]);
+            if (!chosen.contains(g[3])) chosen.add(g[3]);
+        }
+        if (chosen.isEmpty()) {
+            // nichts frei begehbar: günstigstes Paar als einziges Portal (Abbauen/Bauen)
+            int best = -1;
+            for (int i = 0; i < 256; i++)
+                if (cost[i] >= 0 && (best < 0 || cost[i] < cost[best])) best = i;
+            if (best >= 0) chosen.add(best);
+        }
+        long[] pairs = new long[chosen.size() * 2];
+        for (int k = 0; k < chosen.size(); k++) {
+            pairs[2 * k] = a[chosen.get(k)];
+            pairs[2 * k + 1] = b[chosen.get(k)];
+        }
+        faces[axis].put(key, pairs);
+        return pairs;
+    }
+
+    private static int farthest(int[] cells, int n, int from) {
+        int best = from, bestD = -1;
+        for (int k = 0; k < n; k++) {
+            int d = Math.abs(cells[k] / 16 - from / 16) + Math.abs(cells[k] % 16 - from % 16);
+            if (d > bestD) { bestD = d; best = cells[k]; }
+        }
+        return best;
+    }
+
+    // ------------------------------------------------------------------ Suche innerhalb eines Clusters
+
+    /**
+     * Dijkstra innerhalb einer Section, Knoten-ID = lokaler Index (y<<8)|(z<<4)|x.
+     * Alle Kanten haben ganzzahlige Kosten unter {@link #RING} (die Aufschläge sind über
+     * {@link BlockCostTable.Config#MAX_SURCHARGE} begrenzt), daher reicht statt eines Heaps eine
+     * ringförmige Bucket-Queue (Dial).
+     */
+    private static final class LocalSearch {
+        static final int RING = 1024;
+        static final int INF = Integer.MAX_VALUE;
+        static final int MOVES = Pathfinder.MOVES.length;
+        /** Lokale Nachbarindizes je Zelle und Bewegung, -1 außerhalb der Section. */
+        static final int[] NEIGHBORS = new int[4096 * MOVES];
+
+        static {
+            for (int i = 0; i < 4096; i++) {
+                int x = i & 15, y = i >> 8, z = (i >> 4) & 15;
+                for (int m = 0; m < MOVES; m++) {
+                    int[] d = Pathfinder.MOVES[m];
+                    int nx = x + d[0], ny = y + d[1], nz = z + d[2];
+                    boolean in = nx >= 0 && nx < 16 && ny >= 0 && ny < 16 && nz >= 0 && nz < 16;
+                    NEIGHBORS[i * MOVES + m] = in ? (ny << 8) | (nz << 4) | nx : -1;
+                }
+            }
+        }
+
+        final int[] dist = new int[4096];
+        final int[] link = new int[4096];
+        final boolean[] pending = new boolean[4096];
+        final int[] bucketHead = new int[RING];
+        final int[] nextInBucket = new int[4096 * 15];
+        final int[] bucketNode = new int[4096 * 15];
+        final Map<Long, int[]> enterCosts = new HashMap<>();
+        int[] enter;
+        int entries, queued, current;
+        long section = Long.MIN_VALUE;
+        int ox, oy, oz, goalLocal, goalStep;
+
+        /**
+         * Kosten ab src. Die Suche endet früh, sobald stopAt erreicht ist bzw. alle targets
+         * feststehen; Long.MIN_VALUE und null heißen: ganze Section durchsuchen.
+         */
+        void forward(CostGrid grid, long section, long src, long goal, long stopAt, long[] targets) {
+            reset(grid, section, goal);
+            int si = local(src);
+            dist[si] = 0;
+            push(si);
+            int open = 0;
+            if (targets != null) {
+                for (long p : targets) if (inside(PackedPos.x(p), PackedPos.y(p), PackedPos.z(p)) && !pending[local(p)]) {
+                    pending[local(p)] = true;
+                    open++;
+                }
+            }
+            int stop = stopAt != Long.MIN_VALUE ? local(stopAt) : -1;
+            for (int u = pop(); u >= 0; u = pop()) {
+                if (u == stop) break;
+                if (pending[u]) {
+                    pending[u] = false;
+                    if (--open == 0) break;
+                }
+                for (int k = u * MOVES; k < u * MOVES + MOVES; k++) {
+                    int v = NEIGHBORS[k];
+                    if (v < 0) continue;
+                    int step = v == goalLocal ? goalStep : enter[v];
+                    if (step == Pathfinder.INVALID) continue;
+                    int nd = dist[u] + 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step);
+                    if (nd < dist[v]) {
+                        dist[v] = nd;
+                        link[v] = u;
+                        push(v);
+                    }
+                }
+            }
+        }
+
+        /** Kosten bis dst (Rückwärtssuche); link zeigt jeweils auf den nächsten Schritt Richtung dst. */
+        void backward(CostGrid grid, long section, long dst) {
+            reset(grid, section, dst);
+            int di = local(dst);
+            dist[di] = 0;
+            push(di);
+            for (int v = pop(); v >= 0; v = pop()) {
+                int step = v == goalLocal ? goalStep : enter[v];
+                if (step == Pathfinder.INVALID) continue;
+                int c = 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step);
+                // die Bewegungen sind symmetrisch, Vorgänger sind also genau die Nachbarn
+                for (int k = v * MOVES; k < v * MOVES + MOVES; k++) {
+                    int u = NEIGHBORS[k];
+                    if (u < 0) continue;
+                    int nd = dist[v] + c;
+                    if (nd < dist[u]) {
+                        dist[u] = nd;
+                        link[u] = v;
+                        push(u);
+                    }
+                }
+            }
+        }
+
+        double dist(long p) {
+            if (!inside(PackedPos.x(p), PackedPos.y(p), PackedPos.z(p))) return Double.POSITIVE_INFINITY;
+            int d = dist[local(p)];
+            return d == INF ? Double.POSITIVE_INFINITY : d;
+        }
+
+        /** Vorgänger nach {@link #forward}. */
+        long prev(long p) { return cell(link[local(p)]); }
+
+        /** Nächster Schritt nach {@link #backward}, Long.MIN_VALUE am Ziel. */
+        long next(long p) {
+            int l = link[local(p)];
+            return l < 0 ? Long.MIN_VALUE : cell(l);
+        }
+
+        /** Legt v mit seiner aktuellen Distanz ab; veraltete Einträge überspringt {@link #pop}. */
+        private void push(int v) {
+            if (entries == bucketNode.length) return; // kann bei 14 Kanten pro Knoten nicht passieren
+            int b = dist[v] & (RING - 1);
+            bucketNode[entries] = v;
+            nextInBucket[entries] = bucketHead[b];
+            bucketHead[b] = entries++;
+            queued++;
+        }
+
+        private int pop() {
+            while (queued > 0) {
+                int b = current & (RING - 1);
+                int e = bucketHead[b];
+                if (e < 0) {
+                    current++;
+                    continue;
+                }
+                bucketHead[b] = nextInBucket[e];
+                queued--;
+                int v = bucketNode[e];
+                if (dist[v] == current) return v;
+            }
+            return -1;
+        }
+
+        /** Bereitet eine Suche vor; die Eintrittskosten jeder Zelle werden pro Section und Anfrage nur einmal bestimmt. */
+        private void reset(CostGrid grid, long section, long goal) {
+            if (section != this.section) {
+                this.section = section;
+                ox = PackedPos.x(section) << 4;
+                oy = PackedPos.y(section) << 4;
+                oz = PackedPos.z(section) << 4;
+                enter = enterCosts.computeIfAbsent(section, k -> {
+                    int[] e = new int[4096];
+                    for (int i = 0; i < 4096; i++)
+                        e[i] = grid.stepCost(ox + (i & 15), oy + (i >> 8), oz + ((i >> 4) & 15), false);
+                    return e;
+                });
+            }
+            boolean goalInside = goal != Long.MIN_VALUE && inside(PackedPos.x(goal), PackedPos.y(goal), PackedPos.z(goal));
+            goalLocal = goalInside ? local(goal) : -1;
+            goalStep = goalInside ? grid.stepCost(PackedPos.x(goal), PackedPos.y(goal), PackedPos.z(goal), true) : 0;
+            Arrays.fill(dist, INF);
+            Arrays.fill(link, -1);
+            Arrays.fill(pending, false);
+            Arrays.fill(bucketHead, -1);
+            entries = queued = current = 0;
+        }
+
+        private boolean inside(int x, int y, int z) {
+            return x >= ox && x < ox + 16 && y >= oy && y < oy + 16 && z >= oz && z < oz + 16;
+        }
+
+        private int local(long p) {
+            return ((PackedPos.y(p) - oy) << 8) | ((PackedPos.z(p) - oz) << 4) | (PackedPos.x(p) - ox);
+        }
+
+        private long cell(int i) {
+            return PackedPos.pack(ox + (i & 15), oy + (i >> 8), oz + ((i >> 4) & 15));
+        }
+    }
+}
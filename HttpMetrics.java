@@ -0,0 +1,71 @@
+package name.azathoth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Zähler für /http_metrics: Antworten, Bytes vor und nach der Kompression, pro Endpunkt.
+ * Wird von {@link ResponseStream} beim Schließen gefüttert, von beliebigen Threads.
+ */
+final class HttpMetrics {
+    private static final class Counters {
+        final LongAdder responses = new LongAdder();
+        final LongAdder compressed = new LongAdder();
+        final LongAdder rawBytes = new LongAdder();
+        final LongAdder sentBytes = new LongAdder();
+        final LongAdder chunked = new LongAdder();
+    }
+
+    private final Map<String, Counters> byPath = new ConcurrentHashMap<>();
+
+    /**
+     * @param encoding Content-Encoding der Antwort, null wenn unkomprimiert
+     * @param chunked  ob ohne Content-Length (Chunked Transfer) gesendet wurde
+     */
+    void record(String path, long rawBytes, long sentBytes, String encoding, boolean chunked) {
+        Counters c = byPath.computeIfAbsent(path, k -> new Counters());
+        c.responses.increment();
+        if (encoding != null) c.compressed.increment();
+        if (chunked) c.chunked.increment();
+        c.rawBytes.add(rawBytes);
+        c.sentBytes.add(sentBytes);
+    }
+
+    /** {total: {...}, paths: {"/world_snapshot": {...}, ...}}; ratio = gesendet / roh. */
+    Map<String, Object> snapshot() {
+        Map<String, Object> paths = new TreeMap<>();
+        long responses = 0, compressed = 0, chunked = 0, raw = 0, sent = 0;
+        for (Map.Entry<String, Counters> e : byPath.entrySet()) {
+            Counters c = e.getValue();
+            paths.put(e.getKey(), entry(c.responses.sum(), c.compressed.sum(), c.chunked.sum(),
+                    c.rawBytes.sum(), c.sentBytes.sum()));
+            responses += c.responses.sum();
+            compressed += c.compressed.sum();
+            chunked += c.chunked.sum();
+            raw += c.rawBytes.sum();
+            sent += c.sentBytes.sum();
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("total", entry(responses, compressed, chunked, raw, sent));
+        out.put("paths", paths);
+        return out;
+    }
+
+    void reset() {
+        byPath.clear();
+    }
+
+    private static Map<String, Object> entry(long responses, long compressed, long chunked, long raw, long sent) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("responses", responses);
+        m.put("compressed", compressed);
+        m.put("chunked", chunked);
+        m.put("raw_bytes", raw);
+        m.put("sent_bytes", sent);
+        m.put("ratio", raw == 0 ? 1.0 : (double) sent / raw);
+        return m;
+    }
+}
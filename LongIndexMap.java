@@ -0,0 +1,81 @@
+package qwermotion.azathoth;
+
+import java.util.Arrays;
+
+/**
+ * Open-Addressing-Map long → int (lineares Sondieren), ohne Boxing.
+ * Werte müssen >= 0 sein, -1 bedeutet "nicht vorhanden".
+ */
+final class LongIndexMap {
+    private static final int EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIndexMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new int[cap];
+        Arrays.fill(values, EMPTY);
+        mask = cap - 1;
+    }
+
+    int size() { return size; }
+
+    int get(long key) {
+        int i = slot(key);
+        while (values[i] != EMPTY) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    void put(long key, int value) {
+        int i = slot(key);
+        while (values[i] != EMPTY) {
+            if (keys[i] == key) { values[i] = value; return; }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) grow();
+    }
+
+    /** Alle Schlüssel, einsortiert nach ihrem Wert; setzt voraus, dass die Werte genau 0..size-1 sind. */
+    long[] keysByValue() {
+        long[] out = new long[size];
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != EMPTY) out[values[i]] = keys[i];
+        }
+        return out;
+    }
+
+    void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, EMPTY);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == EMPTY) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != EMPTY) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.util.*;
 
 public class MinecraftHttpServer extends NanoHTTPD {
+    private static final com.google.gson.Gson GSON = new com.google.gson.Gson();
 
     public MinecraftHttpServer() throws IOException {
         super(8080);
@@ -222,7 +223,7 @@ public class MinecraftHttpServer extends NanoHTTPD {
     }
 
     private Response jsonResponse(Object obj) {
-        String json = new com.google.gson.Gson().toJson(obj);
+        String json = GSON.toJson(obj);
         return newFixedLengthResponse(Response.Status.OK, "application/json", json);
     }
 }
@@ -0,0 +1,129 @@
+package qwermotion.azathoth;
+
+import java.util.Arrays;
+
+/**
+ * Indizierter binärer Min-Heap über Knoten-IDs mit Decrease-Key.
+ * Sortiert nach (key, tie) – tie dient als Tie-Breaker (z.B. h, damit Knoten
+ * näher am Ziel bei gleichem f zuerst expandiert werden).
+ */
+final class NodeHeap {
+    private int[] heap;      // Heap-Position → Knoten-ID
+    private int[] slot;      // Knoten-ID → Heap-Position, -1 wenn nicht enthalten
+    private double[] key;    // Knoten-ID → Primärschlüssel
+    private double[] tie;    // Knoten-ID → Sekundärschlüssel
+    private int size;
+
+    NodeHeap(int capacity) {
+        capacity = Math.max(16, capacity);
+        heap = new int[capacity];
+        slot = new int[capacity];
+        key = new double[capacity];
+        tie = new double[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    boolean contains(int id) { return id < slot.length && slot[id] >= 0; }
+
+    double peekKey() { return key[heap[0]]; }
+    double peekTie() { return tie[heap[0]]; }
+    int peek() { return heap[0]; }
+
+    /** Fügt den Knoten ein oder ändert seinen Schlüssel (in beide Richtungen). */
+    void insertOrUpdate(int id, double k, double t) {
+        ensureId(id);
+        int pos = slot[id];
+        if (pos < 0) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            key[id] = k; tie[id] = t;
+            heap[size] = id;
+            slot[id] = size;
+            siftUp(size++);
+            return;
+        }
+        boolean decreased = less(k, t, key[id], tie[id]);
+        key[id] = k; tie[id] = t;
+        if (decreased) siftUp(pos); else siftDown(pos);
+    }
+
+    int poll() {
+        int top = heap[0];
+        removeAt(0);
+        return top;
+    }
+
+    void remove(int id) {
+        if (contains(id)) removeAt(slot[id]);
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) slot[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void removeAt(int pos) {
+        int id = heap[pos];
+        slot[id] = -1;
+        int last = heap[--size];
+        if (pos == size) return;
+        heap[pos] = last;
+        slot[last] = pos;
+        siftDown(pos);
+        if (heap[pos] == last) siftUp(pos);
+    }
+
+    private void ensureId(int id) {
+        if (id < slot.length) return;
+        int cap = Math.max(id + 1, slot.length * 2);
+        int old = slot.length;
+        slot = Arrays.copyOf(slot, cap);
+        Arrays.fill(slot, old, cap, -1);
+        key = Arrays.copyOf(key, cap);
+        tie = Arrays.copyOf(tie, cap);
+    }
+
+    private boolean less(double k1, double t1, double k2, double t2) {
+        return k1 < k2 || (k1 == k2 && t1 < t2);
+    }
+
+    private boolean less(int a, int b) {
+        return less(key[a], tie[a], key[b], tie[b]);
+    }
+
+    private void siftUp(int pos) {
+        int id = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int p = heap[parent];
+            if (!less(id, p)) break;
+            heap[pos] = p;
+            slot[p] = pos;
+            pos = parent;
+        }
+        heap[pos] = id;
+        slot[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && less(heap[right], c)) {
+                child = right;
+                c = heap[child];
+            }
+            if (!less(c, id)) break;
+            heap[pos] = c;
+            slot[c] = pos;
+            pos = child;
+        }
+        heap[pos] = id;
+        slot[id] = pos;
+    }
+}
@@ -0,0 +1,33 @@
+package qwermotion.azathoth;
+
+/**
+ * Packt Blockkoordinaten in einen einzelnen long (26 Bit X, 26 Bit Z, 12 Bit Y),
+ * damit die Suche ohne BlockPos-Objekte auskommt.
+ * Das Layout entspricht dem von BlockPos.asLong, ist aber unabhängig von Minecraft.
+ */
+public final class PackedPos {
+    private static final int BITS_XZ = 26;
+    private static final int BITS_Y  = 12;
+    private static final long MASK_XZ = (1L << BITS_XZ) - 1;
+    private static final long MASK_Y  = (1L << BITS_Y) - 1;
+    private static final int SHIFT_X = BITS_XZ + BITS_Y;
+    private static final int SHIFT_Z = BITS_Y;
+
+    private PackedPos() {}
+
+    public static long pack(int x, int y, int z) {
+        return ((x & MASK_XZ) << SHIFT_X) | ((z & MASK_XZ) << SHIFT_Z) | (y & MASK_Y);
+    }
+
+    public static int x(long p) { return (int) (p >> SHIFT_X); }
+    public static int y(long p) { return (int) (p << (64 - BITS_Y) >> (64 - BITS_Y)); }
+    public static int z(long p) { return (int) (p << (64 - SHIFT_X) >> (64 - BITS_XZ)); }
+
+    public static long offset(long p, int dx, int dy, int dz) {
+        return pack(x(p) + dx, y(p) + dy, z(p) + dz);
+    }
+
+    public static int manhattan(long a, long b) {
+        return Math.abs(x(a) - x(b)) + Math.abs(y(a) - y(b)) + Math.abs(z(a) - z(b));
+    }
+}
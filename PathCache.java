@@ -0,0 +1,128 @@
+package qwermotion.azathoth;
+
+import java.util.*;
+
+/**
+ * Begrenzter LRU-Cache für fertige Pfade aus {@link Pathfinder}.
+ * Schlüssel sind Start, Ziel, Radius und {@link BlockCostTable#version()}. Zu jedem
+ * Eintrag merkt sich der Cache die Sections, die die Suche abgetastet hat; ändert sich ein
+ * Block in einer davon, fliegt der Eintrag raus. Gespeichert werden nur gefundene Pfade.
+ *
+ * Alle Methoden sind synchronisiert, der Cache kann von HTTP- und Client-Thread benutzt werden.
+ */
+public final class PathCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public record Key(long start, long goal, int radius, int costModel) {
+        public static Key of(int sx, int sy, int sz, int gx, int gy, int gz, int radius) {
+            return new Key(PackedPos.pack(sx, sy, sz), PackedPos.pack(gx, gy, gz), radius,
+                    BlockCostTable.version());
+        }
+    }
+
+    public record Stats(int size, int capacity, long hits, long misses, long invalidated, long evicted) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(Pathfinder.Path path, long[] sections) {}
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    /** Section-Schlüssel → Cache-Einträge, deren Suche die Section abgetastet hat. */
+    private final Map<Long, Set<Key>> bySection = new HashMap<>();
+    private long hits, misses, invalidated, evicted;
+
+    public PathCache() { this(DEFAULT_CAPACITY); }
+
+    public PathCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Kapazität muss positiv sein: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= PathCache.this.capacity) return false;
+                unindex(eldest.getKey(), eldest.getValue());
+                evicted++;
+                return true;
+            }
+        };
+    }
+
+    /** @return der zwischengespeicherte Pfad oder null; zählt Treffer bzw. Fehlschlag */
+    public synchronized Pathfinder.Path get(Key key) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.path;
+    }
+
+    /**
+     * Legt einen Pfad ab.
+     * @param sections die von der Suche abgetasteten Sections, siehe {@link CostGrid#sampledSectionKeys()}
+     */
+    public synchronized void put(Key key, Pathfinder.Path path, long[] sections) {
+        Entry old = entries.remove(key);
+        if (old != null) unindex(key, old);
+        Entry e = new Entry(path, sections);
+        for (long s : sections) bySection.computeIfAbsent(s, k -> new HashSet<>()).add(key);
+        entries.put(key, e);
+    }
+
+    /**
+     * Wie {@link #put}, aber nur, wenn sich keine der Sections seit der Version since geändert hat.
+     * Die Suche lief gegen eine Kopie mit Stand since; eine Änderung danach hat den Eintrag, den es
+     * noch nicht gab, nicht verworfen. Geprüft wird unter derselben Sperre wie
+     * {@link #onSectionChanged}: wer erst {@link SectionVersions#bump} und dann onSectionChanged
+     * aufruft, verliert so keine Änderung.
+     * @return ob der Pfad abgelegt wurde
+     */
+    public synchronized boolean putIfUnchanged(Key key, Pathfinder.Path path, long[] sections,
+                                               SectionVersions versions, long since) {
+        for (long s : sections) {
+            if (versions.changedSince(PackedPos.x(s), PackedPos.y(s), PackedPos.z(s), since)) return false;
+        }
+        put(key, path, sections);
+        return true;
+    }
+
+    /** Block in Section (sx, sy, sz) hat sich geändert: alle Pfade, die sie benutzt haben, verwerfen. */
+    public synchronized void onSectionChanged(int sx, int sy, int sz) {
+        Set<Key> keys = bySection.remove(PackedPos.pack(sx, sy, sz));
+        if (keys == null) return;
+        for (Key key : keys) {
+            Entry e = entries.remove(key);
+            if (e == null) continue;
+            unindex(key, e);
+            invalidated++;
+        }
+    }
+
+    /** Chunk wurde geladen oder entladen: jede Section der Spalte gilt als geändert. */
+    public synchronized void onChunkChanged(int cx, int cz, int minSy, int maxSy) {
+        for (int sy = minSy; sy <= maxSy; sy++) onSectionChanged(cx, sy, cz);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bySection.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), capacity, hits, misses, invalidated, evicted);
+    }
+
+    private void unindex(Key key, Entry e) {
+        for (long s : e.sections) {
+            Set<Key> keys = bySection.get(s);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) bySection.remove(s);
+        }
+    }
+}
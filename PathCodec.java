@@ -0,0 +1,113 @@
+package qwermotion.azathoth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kompakte Darstellungen eines {@link Pathfinder.Path} für /find_path.
+ * <ul>
+ *   <li>{@link #compress}: gerade Läufe gleicher Richtung und gleicher Aktion werden zu
+ *       einem {@link Segment} zusammengefasst (Endpunkt, Schrittzahl, Aktion)</li>
+ *   <li>{@link #pack}: int-Array [x, y, z, Schritte, ...], danach pro Schritt ein Byte
+ *       (Richtungsindex in {@link Pathfinder#MOVES} in den unteren 4 Bit, Aktions-Bits
+ *       darüber), vier Schritte pro int, höchstwertiges Byte zuerst</li>
+ * </ul>
+ * Die Aktionen werden aus dem {@link CostGrid} gelesen, also aus dem aktuellen Weltzustand.
+ */
+public final class PathCodec {
+    /** Aktions-Bits pro Schritt; 0 heißt einfach gehen (auch abwärts). */
+    public static final int JUMP  = 1;
+    public static final int BREAK = 2;
+    public static final int PLACE = 4;
+
+    public record Segment(int x, int y, int z, int n, String action) {}
+
+    private PathCodec() {}
+
+    public static List<Segment> compress(Pathfinder.Path path, CostGrid grid) {
+        List<List<Integer>> pos = path.positions();
+        List<Segment> out = new ArrayList<>();
+        int runDir = -1, runAction = -1, runLength = 0;
+        for (int i = 1; i < pos.size(); i++) {
+            int dir = direction(pos.get(i - 1), pos.get(i));
+            int action = action(grid, pos.get(i - 1), pos.get(i), i == pos.size() - 1);
+            if (dir != runDir || action != runAction) {
+                if (runLength > 0) out.add(segment(pos.get(i - 1), runLength, runAction));
+                runDir = dir;
+                runAction = action;
+                runLength = 0;
+            }
+            runLength++;
+        }
+        if (runLength > 0) out.add(segment(pos.get(pos.size() - 1), runLength, runAction));
+        return out;
+    }
+
+    public static int[] pack(Pathfinder.Path path, CostGrid grid) {
+        List<List<Integer>> pos = path.positions();
+        int steps = pos.size() - 1;
+        int[] out = new int[4 + (steps + 3) / 4];
+        List<Integer> start = pos.get(0);
+        out[0] = start.get(0);
+        out[1] = start.get(1);
+        out[2] = start.get(2);
+        out[3] = steps;
+        for (int i = 1; i <= steps; i++) {
+            int b = direction(pos.get(i - 1), pos.get(i))
+                    | action(grid, pos.get(i - 1), pos.get(i), i == steps) << 4;
+            int k = i - 1;
+            out[4 + k / 4] |= b << (24 - 8 * (k % 4));
+        }
+        return out;
+    }
+
+    /** Gegenstück zu {@link #pack}: liefert die Positionen inklusive Start. */
+    public static List<List<Integer>> unpack(int[] packed) {
+        int x = packed[0], y = packed[1], z = packed[2], steps = packed[3];
+        List<List<Integer>> out = new ArrayList<>(steps + 1);
+        out.add(Arrays.asList(x, y, z));
+        for (int k = 0; k < steps; k++) {
+            int b = packed[4 + k / 4] >>> (24 - 8 * (k % 4));
+            int[] d = Pathfinder.MOVES[b & 0x0F];
+            x += d[0];
+            y += d[1];
+            z += d[2];
+            out.add(Arrays.asList(x, y, z));
+        }
+        return out;
+    }
+
+    public static String actionName(int action) {
+        if (action == 0) return "walk";
+        StringBuilder sb = new StringBuilder();
+        if ((action & JUMP) != 0) sb.append("jump");
+        if ((action & BREAK) != 0) sb.append(sb.isEmpty() ? "" : "+").append("break");
+        if ((action & PLACE) != 0) sb.append(sb.isEmpty() ? "" : "+").append("place");
+        return sb.toString();
+    }
+
+    private static Segment segment(List<Integer> end, int n, int action) {
+        return new Segment(end.get(0), end.get(1), end.get(2), n, actionName(action));
+    }
+
+    private static int direction(List<Integer> from, List<Integer> to) {
+        int dx = to.get(0) - from.get(0), dy = to.get(1) - from.get(1), dz = to.get(2) - from.get(2);
+        for (int i = 0; i < Pathfinder.MOVES.length; i++) {
+            int[] d = Pathfinder.MOVES[i];
+            if (d[0] == dx && d[1] == dy && d[2] == dz) return i;
+        }
+        throw new IllegalArgumentException("Kein gültiger Schritt: " + from + " -> " + to);
+    }
+
+    /** Dieselben Regeln wie {@link CostGrid#stepCost}, nur als Aktion statt als Kosten. */
+    private static int action(CostGrid grid, List<Integer> from, List<Integer> to, boolean isGoal) {
+        int x = to.get(0), y = to.get(1), z = to.get(2);
+        int a = y > from.get(1) ? JUMP : 0;
+        int f = grid.flags(x, y, z);
+        if ((f & CostGrid.PASSABLE) == 0) a |= BREAK;
+        else if ((grid.flags(x, y - 1, z) & CostGrid.FLOOR) == 0) a |= PLACE;
+        if (!isGoal && (grid.flags(x, y + 1, z) & CostGrid.AIR) == 0) a |= BREAK;
+        return a;
+    }
+}
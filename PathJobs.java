@@ -0,0 +1,162 @@
+package qwermotion.azathoth;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Asynchrone Pfadsuchen: Jobs werden gegen einen {@link SectionSnapshot} auf einem
+ * begrenzten Worker-Pool gerechnet, haben eine Deadline und können abgefragt oder
+ * abgebrochen werden. Fertige Jobs werden nach {@link #RETENTION_MS} verworfen.
+ */
+public final class PathJobs {
+    /** PARTIAL: Anytime-Job, dessen Pfad nur bis zur größten Annäherung ans Ziel reicht. */
+    public enum State { QUEUED, RUNNING, FOUND, PARTIAL, NOT_FOUND, CANCELLED, TIMED_OUT, FAILED }
+
+    public static final long DEFAULT_BUDGET_MS = 5_000;
+    public static final long MAX_BUDGET_MS = 30_000;
+    static final long RETENTION_MS = 120_000;
+    private static final int QUEUE_CAPACITY = 64;
+
+    public static final class Job {
+        public final long id;
+        public final BlockPos start, goal;
+        public final int radius;
+        /** Startgewicht der Anytime-Suche ({@link Pathfinder#findPathAnytime}), 0 = exaktes A*. */
+        public final double epsilon;
+        final SearchControl control;
+        final long submittedAt = System.currentTimeMillis();
+        private SectionSnapshot snapshot; // wird nach dem Lauf freigegeben
+        /** Übergänge nur per CAS: cancel() und der Worker können gleichzeitig am Job ansetzen. */
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+        private volatile Pathfinder.Path path;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        Job(long id, BlockPos start, BlockPos goal, int radius, double epsilon, long budgetMs,
+            SectionSnapshot snapshot) {
+            this.id = id;
+            this.start = start;
+            this.goal = goal;
+            this.radius = radius;
+            this.epsilon = epsilon;
+            this.control = SearchControl.withBudget(budgetMs);
+            this.snapshot = snapshot;
+        }
+
+        public State state() { return state.get(); }
+        public Pathfinder.Path path() { return path; }
+        public String error() { return error; }
+        public SearchControl control() { return control; }
+        public long elapsedMs() { return (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - submittedAt; }
+        public boolean isDone() { return finishedAt > 0; }
+
+        private void run() {
+            SectionSnapshot snap = snapshot;
+            if (snap == null || control.isCancelled()) {
+                finish(State.QUEUED, State.CANCELLED);
+                return;
+            }
+            if (control.checkpoint(0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY)) {
+                finish(State.QUEUED, State.TIMED_OUT);
+                return;
+            }
+            // schlägt fehl, wenn cancel() den Job inzwischen beendet hat
+            if (!state.compareAndSet(State.QUEUED, State.RUNNING)) return;
+            try {
+                if (epsilon >= 1) {
+                    Pathfinder.Path result = Pathfinder.findPathAnytime(new CostGrid(snap), start, goal, radius, epsilon, control);
+                    path = result;
+                    if (result.stats().complete()) finish(State.FOUND);
+                    else if (control.isCancelled()) finish(State.CANCELLED);
+                    else finish(State.PARTIAL);
+                    return;
+                }
+                Pathfinder.Path result = Pathfinder.findPath(new CostGrid(snap), start, goal, radius, control);
+                path = result;
+                if (result != null) finish(State.FOUND);
+                else if (control.isCancelled()) finish(State.CANCELLED);
+                else if (control.isTimedOut()) finish(State.TIMED_OUT);
+                else finish(State.NOT_FOUND);
+            } catch (RuntimeException e) {
+                error = e.toString();
+                finish(State.FAILED);
+            }
+        }
+
+        /** Beendet den Job, falls er noch im Zustand from ist. */
+        private void finish(State from, State to) {
+            if (!state.compareAndSet(from, to)) return;
+            snapshot = null;
+            finishedAt = System.currentTimeMillis();
+        }
+
+        private void finish(State s) {
+            finish(State.RUNNING, s);
+        }
+    }
+
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ThreadPoolExecutor workers;
+
+    public PathJobs() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public PathJobs(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "PathJob-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reiht einen Job ein. Der Snapshot muss vorher auf dem Client-Thread erzeugt worden sein.
+     * @throws RejectedExecutionException wenn die Warteschlange voll ist
+     */
+    public Job submit(BlockPos start, BlockPos goal, int radius, double epsilon, long budgetMs,
+                      SectionSnapshot snapshot) {
+        purgeFinished();
+        long budget = Math.max(1, Math.min(budgetMs, MAX_BUDGET_MS));
+        Job job = new Job(nextId.getAndIncrement(), start, goal, radius, epsilon, budget, snapshot);
+        jobs.put(job.id, job);
+        try {
+            workers.execute(job::run);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job;
+    }
+
+    public Job get(long id) {
+        return jobs.get(id);
+    }
+
+    /** Bricht den Job ab; laufende Suchen stoppen am nächsten Prüfpunkt. */
+    public Job cancel(long id) {
+        Job job = jobs.get(id);
+        if (job == null) return null;
+        job.control.cancel();
+        // noch nicht gestartete Jobs sofort als abgebrochen melden, der Worker überspringt sie
+        job.finish(State.QUEUED, State.CANCELLED);
+        return job;
+    }
+
+    public int queued() { return workers.getQueue().size(); }
+    public int running() { return workers.getActiveCount(); }
+
+    private void purgeFinished() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MS;
+        jobs.values().removeIf(j -> j.isDone() && j.finishedAt < cutoff);
+    }
+}
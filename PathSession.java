@@ -0,0 +1,232 @@
+package qwermotion.azathoth;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
+
+/**
+ * Inkrementelle Pfadsuche (D* Lite) für einen Bot.
+ * Gesucht wird rückwärts vom Ziel, sodass g(s) die Restkosten von s zum Ziel sind.
+ * Nach Blockänderungen oder einem neuen Startpunkt werden nur die betroffenen Knoten
+ * neu bewertet, statt die ganze Suche zu wiederholen.
+ *
+ * Kostenmodell und Bewegungen sind dieselben wie in {@link Pathfinder}; die Radius-Raute
+ * hängt am Startpunkt, mit dem die Session angelegt wurde. Die Heuristik ist
+ * max(|dx|+|dz|, |dy|) (minimale Zugzahl), weil D* Lite eine konsistente Heuristik braucht.
+ *
+ * Nicht thread-sicher; Aufrufer synchronisieren pro Session.
+ */
+public final class PathSession {
+    private final CostGrid grid;
+    private final long goal;
+    private final int ax, ay, az, radius;
+
+    private final LongIndexMap index = new LongIndexMap(1 << 12);
+    private long[] pos = new long[1 << 12];
+    private double[] g = new double[1 << 12];
+    private double[] rhs = new double[1 << 12];
+    private int size;
+    private final NodeHeap open = new NodeHeap(1 << 12);
+
+    private long start, last;
+    private double km;
+    private long lastExpanded;
+    private boolean planned;
+
+    public PathSession(CostGrid grid, BlockPos start, BlockPos goal, int radius) {
+        this.grid = grid;
+        this.goal = PackedPos.pack(goal.getX(), goal.getY(), goal.getZ());
+        this.ax = start.getX();
+        this.ay = start.getY();
+        this.az = start.getZ();
+        this.radius = radius;
+        this.start = this.last = PackedPos.pack(ax, ay, az);
+        int gid = id(this.goal);
+        rhs[gid] = 0;
+        open.insertOrUpdate(gid, heuristic(this.start, this.goal), 0);
+    }
+
+    public BlockPos goal() {
+        return new BlockPos(PackedPos.x(goal), PackedPos.y(goal), PackedPos.z(goal));
+    }
+
+    public int radius() { return radius; }
+
+    /** Liegt p innerhalb der Radius-Raute dieser Session? */
+    public boolean covers(BlockPos p) {
+        return inside(p.getX(), p.getY(), p.getZ());
+    }
+
+    /** Alle Sections, die die Session schon abgetastet hat, siehe {@link CostGrid#sampledSectionKeys}. */
+    long[] sampledSectionKeys() { return grid.sampledSectionKeys(); }
+
+    /** Wurde schon einmal geplant, d.h. repariert der nächste Aufruf eine bestehende Suche? */
+    public boolean hasPlanned() { return planned; }
+
+    /** Anzahl der Knoten, die der letzte Aufruf von {@link #plan} expandiert hat. */
+    public long lastExpanded() { return lastExpanded; }
+
+    /**
+     * Setzt den neuen Startpunkt, übernimmt geänderte Blöcke und repariert die Suche.
+     * @param changed Positionen geänderter Blöcke; die betroffenen Sections werden neu
+     *                abgetastet und jede tatsächlich geänderte Zelle eingearbeitet
+     * @return der aktuelle Pfad oder null, wenn das Ziel nicht erreichbar ist
+     */
+    public Pathfinder.Path plan(BlockPos newStart, Collection<BlockPos> changed) {
+        long s = PackedPos.pack(newStart.getX(), newStart.getY(), newStart.getZ());
+        if (s != start) {
+            km += heuristic(last, s);
+            last = s;
+            start = s;
+        }
+        if (changed != null) {
+            Set<Long> sections = new HashSet<>();
+            for (BlockPos p : changed) {
+                if (sections.add(PackedPos.pack(p.getX() >> 4, p.getY() >> 4, p.getZ() >> 4)))
+                    grid.refresh(p.getX(), p.getY(), p.getZ(), this::cellChanged);
+            }
+        }
+        computeShortestPath();
+        planned = true;
+        return extractPath();
+    }
+
+    /**
+     * Zelle p hat sich geändert: betroffen sind alle Kanten in Zellen v, deren Schrittkosten p
+     * lesen (v = p - {@link CostGrid#STEP_READS}), also auch Kopf- und Lava-Nachbarn.
+     */
+    private void cellChanged(long p) {
+        for (int[] r : CostGrid.STEP_READS) {
+            int vx = PackedPos.x(p) - r[0], vy = PackedPos.y(p) - r[1], vz = PackedPos.z(p) - r[2];
+            if (!inside(vx, vy, vz)) continue;
+            for (int[] d : Pathfinder.MOVES) {
+                int ux = vx - d[0], uy = vy - d[1], uz = vz - d[2];
+                if (inside(ux, uy, uz)) updateVertex(PackedPos.pack(ux, uy, uz));
+            }
+        }
+    }
+
+    private void computeShortestPath() {
+        long expanded = 0;
+        int startId = id(start);
+        while (!open.isEmpty() && expanded < Pathfinder.MAX_ITER) {
+            double k1 = key1(startId), k2 = key2(startId);
+            double t1 = open.peekKey(), t2 = open.peekTie();
+            if (!(t1 < k1 || (t1 == k1 && t2 < k2)) && rhs[startId] == g[startId]) break;
+
+            int u = open.poll();
+            expanded++;
+            double n1 = key1(u), n2 = key2(u);
+            if (t1 < n1 || (t1 == n1 && t2 < n2)) {
+                open.insertOrUpdate(u, n1, n2);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                updatePredecessors(pos[u]);
+            } else {
+                g[u] = Double.POSITIVE_INFINITY;
+                updateVertex(pos[u]);
+                updatePredecessors(pos[u]);
+            }
+        }
+        lastExpanded = expanded;
+    }
+
+    private void updatePredecessors(long v) {
+        int vx = PackedPos.x(v), vy = PackedPos.y(v), vz = PackedPos.z(v);
+        for (int[] d : Pathfinder.MOVES) {
+            int ux = vx - d[0], uy = vy - d[1], uz = vz - d[2];
+            if (inside(ux, uy, uz)) updateVertex(PackedPos.pack(ux, uy, uz));
+        }
+    }
+
+    private void updateVertex(long p) {
+        int u = id(p);
+        if (p != goal) {
+            double best = Double.POSITIVE_INFINITY;
+            int ux = PackedPos.x(p), uy = PackedPos.y(p), uz = PackedPos.z(p);
+            for (int[] d : Pathfinder.MOVES) {
+                int vx = ux + d[0], vy = uy + d[1], vz = uz + d[2];
+                if (!inside(vx, vy, vz)) continue;
+                long v = PackedPos.pack(vx, vy, vz);
+                int vid = index.get(v);
+                if (vid < 0 || g[vid] == Double.POSITIVE_INFINITY) continue;
+                int step = grid.stepCost(vx, vy, vz, v == goal);
+                if (step == Pathfinder.INVALID) continue;
+                double c = 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step) + g[vid];
+                if (c < best) best = c;
+            }
+            rhs[u] = best;
+        }
+        if (g[u] != rhs[u]) open.insertOrUpdate(u, key1(u), key2(u));
+        else open.remove(u);
+    }
+
+    /** Folgt vom Start aus jeweils dem günstigsten Nachfolger bis zum Ziel. */
+    private Pathfinder.Path extractPath() {
+        int startId = id(start);
+        if (g[startId] == Double.POSITIVE_INFINITY) return null;
+        List<List<Integer>> positions = new ArrayList<>();
+        long cur = start;
+        int build = 0, time = 0;
+        positions.add(Arrays.asList(PackedPos.x(cur), PackedPos.y(cur), PackedPos.z(cur)));
+        for (int guard = 0; cur != goal; guard++) {
+            if (guard > size) return null; // Zyklus, sollte bei konsistenten Werten nicht vorkommen
+            int cx = PackedPos.x(cur), cy = PackedPos.y(cur), cz = PackedPos.z(cur);
+            long next = 0;
+            int nextStep = 0;
+            double best = Double.POSITIVE_INFINITY;
+            for (int[] d : Pathfinder.MOVES) {
+                int vx = cx + d[0], vy = cy + d[1], vz = cz + d[2];
+                if (!inside(vx, vy, vz)) continue;
+                long v = PackedPos.pack(vx, vy, vz);
+                int vid = index.get(v);
+                if (vid < 0) continue;
+                int step = grid.stepCost(vx, vy, vz, v == goal);
+                if (step == Pathfinder.INVALID) continue;
+                double c = 1 + Pathfinder.stepBuild(step) + Pathfinder.stepTime(step) + g[vid];
+                if (c < best) { best = c; next = v; nextStep = step; }
+            }
+            if (best == Double.POSITIVE_INFINITY) return null;
+            build += Pathfinder.stepBuild(nextStep);
+            time += Pathfinder.stepTime(nextStep);
+            cur = next;
+            positions.add(Arrays.asList(PackedPos.x(cur), PackedPos.y(cur), PackedPos.z(cur)));
+        }
+        return new Pathfinder.Path(positions, build, time, g[startId]);
+    }
+
+    private double key1(int u) {
+        return Math.min(g[u], rhs[u]) + heuristic(start, pos[u]) + km;
+    }
+
+    private double key2(int u) {
+        return Math.min(g[u], rhs[u]);
+    }
+
+    private boolean inside(int x, int y, int z) {
+        return Math.abs(x - ax) + Math.abs(y - ay) + Math.abs(z - az) <= radius;
+    }
+
+    private int id(long p) {
+        int id = index.get(p);
+        if (id >= 0) return id;
+        if (size == pos.length) {
+            int cap = size * 2;
+            pos = Arrays.copyOf(pos, cap);
+            g = Arrays.copyOf(g, cap);
+            rhs = Arrays.copyOf(rhs, cap);
+        }
+        id = size++;
+        pos[id] = p;
+        g[id] = Double.POSITIVE_INFINITY;
+        rhs[id] = Double.POSITIVE_INFINITY;
+        index.put(p, id);
+        return id;
+    }
+
+    /** Minimale Zugzahl: jeder horizontale Schritt kann Y um 1 mitändern. */
+    static double heuristic(long a, long b) {
+        int h = Math.abs(PackedPos.x(a) - PackedPos.x(b)) + Math.abs(PackedPos.z(a) - PackedPos.z(b));
+        return Math.max(h, Math.abs(PackedPos.y(a) - PackedPos.y(b)));
+    }
+}
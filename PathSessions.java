@@ -0,0 +1,95 @@
+package qwermotion.azathoth;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hält pro Bot eine {@link PathSession}. Solange Ziel und Radius gleich bleiben und der
+ * Bot in der Radius-Raute der Session steht, wird die bestehende Suche repariert;
+ * sonst wird eine neue Session angelegt. Sections, die sich laut {@link SectionVersions} seit
+ * der letzten Planung geändert haben, werden vorher neu abgetastet; ist der Versionsstand
+ * ungültig geworden (Weltwechsel), beginnt die Session neu. Unbenutzte Sessions verfallen nach
+ * {@link #IDLE_MS}, und mehr als {@link #MAX_SESSIONS} werden nicht gehalten.
+ */
+public final class PathSessions {
+    static final long IDLE_MS = 10 * 60_000;
+    /** Darüber fliegt die am längsten unbenutzte Session; jede hält ihr eigenes Gitter. */
+    static final int MAX_SESSIONS = 64;
+
+    public record Plan(Pathfinder.Path path, boolean repaired, long expanded) {}
+
+    private static final class Entry {
+        final PathSession session;
+        volatile long lastUsed = System.currentTimeMillis();
+        long seen; // Versionsstand, bis zu dem die Session alle Änderungen kennt
+
+        Entry(PathSession session, long seen) {
+            this.session = session;
+            this.seen = seen;
+        }
+    }
+
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampler  Blockquelle, falls eine neue Session angelegt wird
+     * @param versions Versionen der Welt, aus der sampler liest
+     * @param changed  zusätzlich gemeldete Blockänderungen, darf null sein
+     */
+    public Plan plan(String bot, CostGrid.Sampler sampler, SectionVersions versions, BlockPos start,
+                     BlockPos goal, int radius, Collection<BlockPos> changed) {
+        purgeIdle();
+        long created = versions.current();
+        Entry entry = sessions.compute(bot, (k, e) -> {
+            if (e != null && e.session.goal().equals(goal) && e.session.radius() == radius
+                    && e.session.covers(start) && versions.isValid(e.seen)) return e;
+            return new Entry(new PathSession(new CostGrid(sampler), start, goal, radius), created);
+        });
+        evictOldest(bot);
+        synchronized (entry) {
+            // erst den Stand merken, dann abtasten: was danach passiert, sieht der nächste Aufruf
+            long now = versions.current();
+            List<BlockPos> stale = changed == null ? new ArrayList<>() : new ArrayList<>(changed);
+            for (long key : entry.session.sampledSectionKeys()) {
+                int sx = PackedPos.x(key), sy = PackedPos.y(key), sz = PackedPos.z(key);
+                if (versions.changedSince(sx, sy, sz, entry.seen)) stale.add(new BlockPos(sx << 4, sy << 4, sz << 4));
+            }
+            entry.seen = now;
+            boolean repaired = entry.session.hasPlanned();
+            Pathfinder.Path path = entry.session.plan(start, stale);
+            entry.lastUsed = System.currentTimeMillis();
+            return new Plan(path, repaired, entry.session.lastExpanded());
+        }
+    }
+
+    public boolean drop(String bot) {
+        return sessions.remove(bot) != null;
+    }
+
+    public int size() { return sessions.size(); }
+
+    private void purgeIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_MS;
+        sessions.values().removeIf(e -> e.lastUsed < cutoff);
+    }
+
+    private void evictOldest(String keep) {
+        while (sessions.size() > MAX_SESSIONS) {
+            String oldest = null;
+            long oldestUsed = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> e : sessions.entrySet()) {
+                if (!e.getKey().equals(keep) && e.getValue().lastUsed < oldestUsed) {
+                    oldest = e.getKey();
+                    oldestUsed = e.getValue().lastUsed;
+                }
+            }
+            if (oldest == null) return;
+            sessions.remove(oldest);
+        }
+    }
+}
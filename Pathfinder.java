@@ -1,8 +1,6 @@
 package qwermotion.azathoth;
 
-import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.world.World;
 
 import java.util.*;
@@ -15,116 +13,295 @@ import java.util.*;
  * - Luftbewegung hat hohe Baukosten, um „Fliegen“ zu verhindern.
  * - Kopf-Freiheit entfällt komplett: Blöcke über dem Wegpunkt werden als Abbaukosten eingerechnet.
  * - Suche stoppt, wenn kein Pfad im Radius gefunden oder Max-Iteration überschritten.
+ *
+ * Der Suchkern arbeitet ohne Objekt-Allokation pro Knoten: Positionen werden als long
+ * gepackt ({@link PackedPos}), über eine {@link LongIndexMap} auf Knoten-IDs abgebildet,
+ * und g/parent/build/time liegen in parallelen primitiven Arrays. Die Open-List ist ein
+ * indizierter Heap mit Decrease-Key statt Duplikaten in einer PriorityQueue.
+ * Blockdaten kommen aus einem {@link CostGrid}, nicht direkt aus der Welt.
  */
 public class Pathfinder {
-    public record Path(List<List<Integer>> positions, int buildCost, int timeCost, double totalCost) {}
-
-    private static class Node implements Comparable<Node> {
-        final BlockPos pos;
-        final Node parent;
-        final double g, f;
-        final int build, time;
-        Node(BlockPos pos, Node parent, double g, double h, int build, int time) {
-            this.pos = pos;
-            this.parent = parent;
-            this.g = g; this.f = g + h;
-            this.build = build; this.time = time;
+    /**
+     * @param stats nur bei {@link #findPathAnytime} gesetzt, sonst null
+     */
+    public record Path(List<List<Integer>> positions, int buildCost, int timeCost, double totalCost, Stats stats) {
+        public Path(List<List<Integer>> positions, int buildCost, int timeCost, double totalCost) {
+            this(positions, buildCost, timeCost, totalCost, null);
+        }
+
+        Path withStats(Stats stats) {
+            return new Path(positions, buildCost, timeCost, totalCost, stats);
+        }
+    }
+
+    /**
+     * Kennzahlen einer Anytime-Suche.
+     * @param complete   false, wenn der Pfad nur bis zum Knoten mit der größten Annäherung ans Ziel reicht
+     * @param epsilon    garantierte Schranke: Kosten ≤ epsilon × Optimum; 0, solange kein Durchlauf fertig wurde
+     * @param solutions  Anzahl gefundener, jeweils besserer Lösungen
+     * @param expanded   expandierte Knoten über alle Durchläufe
+     * @param elapsedMs  Rechenzeit
+     * @param timedOut   Zeitbudget wurde ausgeschöpft
+     */
+    public record Stats(boolean complete, double epsilon, int solutions, long expanded, long elapsedMs,
+                        boolean timedOut) {}
+
+    static final int MAX_ITER = 10_000_000;
+
+    /** Die 14 Bewegungsrichtungen: 4 horizontal × {-1, 0, +1} in Y, plus hoch und runter. */
+    static final int[][] MOVES = {
+            {1, -1, 0}, {1, 0, 0}, {1, 1, 0},
+            {-1, -1, 0}, {-1, 0, 0}, {-1, 1, 0},
+            {0, -1, 1}, {0, 0, 1}, {0, 1, 1},
+            {0, -1, -1}, {0, 0, -1}, {0, 1, -1},
+            {0, 1, 0}, {0, -1, 0}
+    };
+
+    /** Schrittkosten, wenn der Block nicht betreten werden darf. */
+    static final int INVALID = -1;
+
+    /**
+     * Primitive Knotentabelle: Knoten-ID → Position, g, Vorgänger, Bau- und Zeitkosten.
+     */
+    static final class Nodes {
+        final LongIndexMap index;
+        long[] pos;
+        double[] g;
+        int[] parent;
+        int[] build;
+        int[] time;
+        int size;
+
+        Nodes(int capacity) {
+            index = new LongIndexMap(capacity);
+            pos = new long[capacity];
+            g = new double[capacity];
+            parent = new int[capacity];
+            build = new int[capacity];
+            time = new int[capacity];
+        }
+
+        /** Liefert die ID zu p oder legt einen neuen Knoten mit g = ∞ an. */
+        int idOf(long p) {
+            int id = index.get(p);
+            if (id >= 0) return id;
+            if (size == pos.length) grow();
+            id = size++;
+            pos[id] = p;
+            g[id] = Double.POSITIVE_INFINITY;
+            parent[id] = -1;
+            index.put(p, id);
+            return id;
+        }
+
+        private void grow() {
+            int cap = pos.length * 2;
+            pos = Arrays.copyOf(pos, cap);
+            g = Arrays.copyOf(g, cap);
+            parent = Arrays.copyOf(parent, cap);
+            build = Arrays.copyOf(build, cap);
+            time = Arrays.copyOf(time, cap);
+        }
+
+        Path toPath(int id) {
+            List<List<Integer>> path = new ArrayList<>();
+            for (int n = id; n >= 0; n = parent[n]) {
+                long p = pos[n];
+                path.add(Arrays.asList(PackedPos.x(p), PackedPos.y(p), PackedPos.z(p)));
+            }
+            Collections.reverse(path);
+            return new Path(path, build[id], time[id], g[id]);
         }
-        @Override
-        public int compareTo(Node o) { return Double.compare(this.f, o.f); }
     }
 
     public static Path findPath(World world, BlockPos start, BlockPos goal, int maxRadius) {
-        PriorityQueue<Node> open = new PriorityQueue<>();
-        Map<BlockPos, Double> costSoFar = new HashMap<>();
-        open.add(new Node(start, null, 0, heuristic(start, goal), 0, 0));
-        costSoFar.put(start, 0.0);
+        return findPath(CostGrid.of(world), start, goal, maxRadius);
+    }
 
-        int iterations = 0, MAX_ITER = 10_000_000;
+    /** Sucht ausschließlich gegen das vorab abgetastete Kostengitter. */
+    public static Path findPath(CostGrid grid, BlockPos start, BlockPos goal, int maxRadius) {
+        return findPath(grid, start, goal, maxRadius, null);
+    }
+
+    /**
+     * Wie {@link #findPath(CostGrid, BlockPos, BlockPos, int)}, aber abbrechbar und mit
+     * Fortschrittszählern. Liefert null, wenn kein Pfad existiert oder die Suche über
+     * control abgebrochen wurde bzw. ihr Zeitbudget überschritten hat.
+     */
+    public static Path findPath(CostGrid grid, BlockPos start, BlockPos goal, int maxRadius,
+                                SearchControl control) {
+        return findPath(grid, PackedPos.pack(start.getX(), start.getY(), start.getZ()),
+                PackedPos.pack(goal.getX(), goal.getY(), goal.getZ()), maxRadius, control);
+    }
+
+    /** Wie oben, Start und Ziel gepackt ({@link PackedPos}); braucht keine Minecraft-Klassen. */
+    public static Path findPath(CostGrid grid, long s, long t, int maxRadius, SearchControl control) {
+        int sx = PackedPos.x(s), sy = PackedPos.y(s), sz = PackedPos.z(s);
+
+        Nodes nodes = new Nodes(1 << 12);
+        NodeHeap open = new NodeHeap(1 << 12);
+        int startId = nodes.idOf(s);
+        nodes.g[startId] = 0;
+        double h0 = heuristic(s, t);
+        open.insertOrUpdate(startId, h0, h0);
+
+        int iterations = 0;
+        double bestH = h0;
         while (!open.isEmpty() && iterations++ < MAX_ITER) {
-            Node cur = open.poll();
-            if (cur.pos.equals(goal)) {
-                List<List<Integer>> path = new ArrayList<>();
-                for (Node n = cur; n != null; n = n.parent)
-                    path.add(Arrays.asList(n.pos.getX(), n.pos.getY(), n.pos.getZ()));
-                Collections.reverse(path);
-                return new Path(path, cur.build, cur.time, cur.g);
+            if (control != null && (iterations & SearchControl.CHECK_MASK) == 0
+                    && control.checkpoint(iterations, open.peekKey(), bestH)) return null;
+            int cur = open.poll();
+            long cp = nodes.pos[cur];
+            if (cp == t) {
+                if (control != null) control.report(iterations, nodes.g[cur], 0);
+                return nodes.toPath(cur);
             }
-            for (Step step : neighbors(world, start, goal, cur.pos, maxRadius)) {
-                BlockPos np = step.pos();
-                double ng = cur.g + step.cost();
-                if (!costSoFar.containsKey(np) || ng < costSoFar.get(np)) {
-                    costSoFar.put(np, ng);
-                    open.add(new Node(np, cur, ng, heuristic(np, goal),
-                            cur.build + step.build(), cur.time + step.time()));
+
+            int cx = PackedPos.x(cp), cy = PackedPos.y(cp), cz = PackedPos.z(cp);
+            for (int[] d : MOVES) {
+                int nx = cx + d[0], ny = cy + d[1], nz = cz + d[2];
+                if (Math.abs(nx - sx) + Math.abs(ny - sy) + Math.abs(nz - sz) > maxRadius) continue;
+                long np = PackedPos.pack(nx, ny, nz);
+                int step = grid.stepCost(nx, ny, nz, np == t);
+                if (step == INVALID) continue;
+                int build = stepBuild(step), time = stepTime(step);
+                double ng = nodes.g[cur] + 1 + build + time;
+                int next = nodes.idOf(np);
+                if (ng < nodes.g[next]) {
+                    nodes.g[next] = ng;
+                    nodes.parent[next] = cur;
+                    nodes.build[next] = nodes.build[cur] + build;
+                    nodes.time[next] = nodes.time[cur] + time;
+                    double h = heuristic(np, t);
+                    if (h < bestH) bestH = h;
+                    open.insertOrUpdate(next, ng + h, h);
                 }
             }
         }
+        if (control != null) control.report(iterations, Double.POSITIVE_INFINITY, bestH);
         return null; // kein Pfad
     }
 
-    private record Step(BlockPos pos, int build, int time) {
-        double cost() { return 1 + build + time; }
+    /**
+     * Anytime-Suche (ARA*): startet mit einer um epsilon gewichteten Heuristik, findet so
+     * schnell einen ersten Pfad und verbessert ihn, solange control Zeit lässt. Liefert immer
+     * ein Ergebnis: den besten gefundenen Pfad oder, wenn das Ziel (noch) nicht erreicht
+     * wurde, den Teilpfad zum Knoten mit der größten Annäherung ans Ziel (im schlechtesten
+     * Fall nur den Start). Siehe {@link AnytimeSearch}.
+     */
+    public static Path findPathAnytime(CostGrid grid, BlockPos start, BlockPos goal, int maxRadius,
+                                       double epsilon, SearchControl control) {
+        return AnytimeSearch.findPath(grid, start, goal, maxRadius, epsilon, control);
     }
 
-    private static List<Step> neighbors(World w, BlockPos start, BlockPos goal, BlockPos p, int maxRadius) {
-        List<Step> list = new ArrayList<>();
-        int[][] dirs = {{1,0,0},{-1,0,0},{0,0,1},{0,0,-1}};
-        for (int[] d : dirs) {
-            for (int dy = -1; dy <= 1; dy++) {
-                BlockPos np = p.add(d[0], dy, d[2]);
-                if (withinRadius(start, np, maxRadius)) addStepIfValid(w, np, goal, list);
-            }
-        }
-        for (BlockPos np : List.of(p.up(), p.down())) {
-            if (withinRadius(start, np, maxRadius)) addStepIfValid(w, np, goal, list);
+    /**
+     * Bis zu so vielen Zielen wird die Heuristik als Minimum über alle Ziele berechnet, darüber als
+     * Abstand zum umschließenden Quader aller Ziele (billiger, schwächer, aber ebenfalls zulässig).
+     */
+    static final int MAX_HEURISTIC_GOALS = 32;
+
+    /**
+     * Eine Suche zu mehreren Zielen: expandiert vom Start aus, bis das erste Ziel vom Heap
+     * kommt, und liefert den Pfad dorthin. Das gewählte Ziel ist die letzte Position des
+     * Pfades. Ausgewählt wird nach Wegkosten, nicht nach Luftlinie.
+     * @return Pfad zum günstigsten erreichbaren Ziel oder null
+     */
+    public static Path findNearest(CostGrid grid, BlockPos start, Collection<BlockPos> goals, int maxRadius,
+                                   SearchControl control) {
+        if (goals.isEmpty()) return null;
+        int sx = start.getX(), sy = start.getY(), sz = start.getZ();
+        long s = PackedPos.pack(sx, sy, sz);
+
+        LongIndexMap goalSet = new LongIndexMap(goals.size());
+        long[] targets = new long[goals.size()];
+        int n = 0;
+        for (BlockPos g : goals) {
+            long t = PackedPos.pack(g.getX(), g.getY(), g.getZ());
+            if (goalSet.get(t) >= 0) continue;
+            goalSet.put(t, n);
+            targets[n++] = t;
         }
-        return list;
-    }
+        int[] box = n > MAX_HEURISTIC_GOALS ? boundingBox(targets, n) : null;
 
-    private static boolean withinRadius(BlockPos start, BlockPos np, int maxRadius) {
-        int dx = Math.abs(np.getX() - start.getX());
-        int dy = Math.abs(np.getY() - start.getY());
-        int dz = Math.abs(np.getZ() - start.getZ());
-        return dx + dy + dz <= maxRadius;
-    }
+        Nodes nodes = new Nodes(1 << 12);
+        NodeHeap open = new NodeHeap(1 << 12);
+        int startId = nodes.idOf(s);
+        nodes.g[startId] = 0;
+        double h0 = nearestHeuristic(s, targets, n, box);
+        open.insertOrUpdate(startId, h0, h0);
 
-    private static void addStepIfValid(World w, BlockPos np, BlockPos goal, List<Step> list) {
-        BlockState bs        = w.getBlockState(np);
-        BlockPos above       = np.up();
-        BlockState aboveState= w.getBlockState(above);
+        int iterations = 0;
+        double bestH = h0;
+        while (!open.isEmpty() && iterations++ < MAX_ITER) {
+            if (control != null && (iterations & SearchControl.CHECK_MASK) == 0
+                    && control.checkpoint(iterations, open.peekKey(), bestH)) return null;
+            int cur = open.poll();
+            long cp = nodes.pos[cur];
+            if (goalSet.get(cp) >= 0) {
+                if (control != null) control.report(iterations, nodes.g[cur], 0);
+                return nodes.toPath(cur);
+            }
 
-        // 1) Fluss- und Lavablöcke nie betreten
-        if (!bs.getFluidState().isEmpty()) return;
+            int cx = PackedPos.x(cp), cy = PackedPos.y(cp), cz = PackedPos.z(cp);
+            for (int[] d : MOVES) {
+                int nx = cx + d[0], ny = cy + d[1], nz = cz + d[2];
+                if (Math.abs(nx - sx) + Math.abs(ny - sy) + Math.abs(nz - sz) > maxRadius) continue;
+                long np = PackedPos.pack(nx, ny, nz);
+                int step = grid.stepCost(nx, ny, nz, goalSet.get(np) >= 0);
+                if (step == INVALID) continue;
+                int build = stepBuild(step), time = stepTime(step);
+                double ng = nodes.g[cur] + 1 + build + time;
+                int next = nodes.idOf(np);
+                if (ng < nodes.g[next]) {
+                    nodes.g[next] = ng;
+                    nodes.parent[next] = cur;
+                    nodes.build[next] = nodes.build[cur] + build;
+                    nodes.time[next] = nodes.time[cur] + time;
+                    double h = nearestHeuristic(np, targets, n, box);
+                    if (h < bestH) bestH = h;
+                    open.insertOrUpdate(next, ng + h, h);
+                }
+            }
+        }
+        if (control != null) control.report(iterations, Double.POSITIVE_INFINITY, bestH);
+        return null;
+    }
 
-        // 2) Wenn ein Block über np steht, muss er zuerst abgebaut werden:
-        int timeAbove = 0;
-        if (!np.equals(goal) && !aboveState.isAir()) {
-            float hard = aboveState.getHardness(w, above);
-            timeAbove = Math.max(1, Math.round(hard));
+    private static double nearestHeuristic(long p, long[] targets, int n, int[] box) {
+        if (box != null) {
+            return outside(PackedPos.x(p), box[0], box[3]) + outside(PackedPos.y(p), box[1], box[4])
+                    + outside(PackedPos.z(p), box[2], box[5]);
         }
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) best = Math.min(best, PackedPos.manhattan(p, targets[i]));
+        return best;
+    }
 
-        // 3) Kollisions‐Form abfragen
-        VoxelShape shape = bs.getCollisionShape(w, np);
-        boolean passable = bs.isAir() || shape.isEmpty();
-
-        if (passable) {
-            // Luft/Raum: Baukosten, wenn kein Boden
-            BlockState below = w.getBlockState(np.down());
-            boolean solidBelow = below.isOpaque() && below.getFluidState().isEmpty();
-            int buildCost = solidBelow ? 0 : 40;
-            list.add(new Step(np, buildCost, timeAbove));
-        } else {
-            // Solider Block: Abbaukosten plus timeAbove
-            float hard = bs.getHardness(w, np);
-            int t = Math.max(4, Math.round(hard));
-            list.add(new Step(np, 0, t + timeAbove));
+    /** {minX, minY, minZ, maxX, maxY, maxZ} der ersten n Ziele. */
+    private static int[] boundingBox(long[] targets, int n) {
+        int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (int i = 0; i < n; i++) {
+            int x = PackedPos.x(targets[i]), y = PackedPos.y(targets[i]), z = PackedPos.z(targets[i]);
+            box[0] = Math.min(box[0], x);
+            box[1] = Math.min(box[1], y);
+            box[2] = Math.min(box[2], z);
+            box[3] = Math.max(box[3], x);
+            box[4] = Math.max(box[4], y);
+            box[5] = Math.max(box[5], z);
         }
+        return box;
     }
 
-    private static double heuristic(BlockPos a, BlockPos b) {
-        return Math.abs(a.getX() - b.getX())
-                + Math.abs(a.getY() - b.getY())
-                + Math.abs(a.getZ() - b.getZ());
+    private static int outside(int c, int min, int max) {
+        return c < min ? min - c : Math.max(0, c - max);
+    }
+
+    static int stepBuild(int step) { return step >>> 16; }
+    static int stepTime(int step)  { return step & 0xFFFF; }
+    static int step(int build, int time) { return (build << 16) | Math.min(time, 0xFFFF); }
+
+    static double heuristic(long a, long b) {
+        return PackedPos.manhattan(a, b);
     }
 }
@@ -0,0 +1,100 @@
+package qwermotion.azathoth.bench;
+
+import qwermotion.azathoth.BlockCostTable;
+import qwermotion.azathoth.CostGrid;
+import qwermotion.azathoth.PackedPos;
+import qwermotion.azathoth.Pathfinder;
+import qwermotion.azathoth.SearchControl;
+import qwermotion.azathoth.SyntheticWorlds;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Messungen des Pathfinders auf den {@link SyntheticWorlds}, ohne laufenden Client und ohne
+ * Minecraft-Klassen auf dem Klassenpfad:
+ * <pre>java -cp &lt;Klassen des Mods&gt; qwermotion.azathoth.bench.PathfinderBenchmark [welt ...]</pre>
+ * Pro Welt und Abstand (32/64/128, Suchradius 1,5-mal so groß):
+ * <ul>
+ *   <li>{@code cold}: frisches {@link CostGrid}, enthält also das Abtasten der Sections
+ *       (so wie /find_path heute jede Anfrage rechnet)</li>
+ *   <li>{@code warm}: Gitter schon abgetastet, misst nur den Suchkern</li>
+ * </ul>
+ * Dazu Pfadkosten, expandierte Knoten, Pfadlänge und allokierte Bytes pro Suche (warm).
+ * Gerechnet wird mit {@link BlockCostTable.Config#DEFAULT}.
+ */
+public final class PathfinderBenchmark {
+    private static final int[] DISTANCES = {32, 64, 128};
+    private static final int WARMUP = 5;
+    /** Jede Messung läuft mindestens so lange und mindestens {@link #MIN_RUNS}-mal. */
+    private static final long MEASURE_NANOS = 500_000_000L;
+    private static final int MIN_RUNS = 5;
+
+    private PathfinderBenchmark() {}
+
+    public static void main(String[] args) {
+        List<String> worlds = args.length > 0 ? List.of(args)
+                : List.of("plains", "caves", "mountain", "maze", "unreachable");
+        System.out.printf("%-12s %5s %9s %9s %7s %10s %10s %12s%n",
+                "world", "dist", "cost", "expanded", "nodes", "cold ms", "warm ms", "bytes/warm");
+        for (String world : worlds) {
+            for (int distance : DISTANCES) {
+                run(SyntheticWorlds.scenario(world, distance), distance);
+            }
+        }
+    }
+
+    private static void run(SyntheticWorlds.Scenario scenario, int distance) {
+        int radius = distance + distance / 2;
+        CostGrid warm = grid(scenario);
+        long s = scenario.start();
+        warm.prefetch(PackedPos.x(s), PackedPos.y(s), PackedPos.z(s), radius);
+
+        SearchControl control = SearchControl.unbounded();
+        Pathfinder.Path path = Pathfinder.findPath(warm, s, scenario.goal(), radius, control);
+        for (int i = 0; i < WARMUP; i++) {
+            search(grid(scenario), scenario, radius);
+            search(warm, scenario, radius);
+        }
+        double coldMs = measure(() -> search(grid(scenario), scenario, radius));
+        long before = allocatedBytes();
+        double warmMs = measure(() -> search(warm, scenario, radius));
+        long bytes = (allocatedBytes() - before) / runs;
+
+        System.out.printf(Locale.ROOT, "%-12s %5d %9s %9d %7d %10.3f %10.3f %12d%n",
+                scenario.name(), distance,
+                path == null ? "-" : String.format(Locale.ROOT, "%.0f", path.totalCost()),
+                control.expanded(), path == null ? 0 : path.positions().size(), coldMs, warmMs, bytes);
+    }
+
+    private static CostGrid grid(SyntheticWorlds.Scenario scenario) {
+        return new CostGrid(scenario.world(), BlockCostTable.Config.DEFAULT);
+    }
+
+    private static void search(CostGrid grid, SyntheticWorlds.Scenario scenario, int radius) {
+        Pathfinder.findPath(grid, scenario.start(), scenario.goal(), radius, null);
+    }
+
+    /** Anzahl Läufe der letzten {@link #measure}. */
+    private static int runs;
+
+    /** Mittlere Dauer eines Laufs in Millisekunden. */
+    private static double measure(Runnable r) {
+        long start = System.nanoTime(), elapsed;
+        runs = 0;
+        do {
+            r.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS || runs < MIN_RUNS);
+        return elapsed / 1e6 / runs;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t) {
+            return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
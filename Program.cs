@@ -12,7 +12,11 @@ namespace AzathothClient
 {
     public class Azathoth
     {
-        private readonly HttpClient _http = new HttpClient();
+        // Eine Instanz für alle Aufrufe: Verbindungen bleiben offen; gzip/deflate packt der Handler aus
+        private readonly HttpClient _http = new HttpClient(new HttpClientHandler
+        {
+            AutomaticDecompression = DecompressionMethods.GZip | DecompressionMethods.Deflate
+        });
         private readonly string _base;
 
         Vec3Int craftingTablePosition;
@@ -26,6 +30,8 @@ namespace AzathothClient
         // --- Hilfstypen ---
         public record Vec3(double X, double Y, double Z, double LookX, double LookY);
         public record Vec3Int(int X, int Y, int Z);
+        /// <summary>Gerader Lauf aus /find_path?format=compact: Endpunkt, Schrittzahl, Aktion (walk, jump, break, place, kombiniert mit '+').</summary>
+        public record PathSegment(Vec3Int End, int N, string Action);
 
         // --- Endpoints ---
 
@@ -33,7 +39,11 @@ namespace AzathothClient
         {
             var resp = _http.GetStringAsync($"{_base}/position").Result;
             using var doc = JsonDocument.Parse(resp);
-            var e = doc.RootElement;
+            return ToVec3(doc.RootElement);
+        }
+
+        private static Vec3 ToVec3(JsonElement e)
+        {
             return new Vec3(
                 e.GetProperty("x").GetDouble(),
                 e.GetProperty("y").GetDouble(),
@@ -50,6 +60,31 @@ namespace AzathothClient
             return doc.RootElement.GetProperty("block").GetString();
         }
 
+        private static string BlockStatusCall(Vec3Int p) => $"/block_status?x={p.X}&y={p.Y}&z={p.Z}";
+
+        /// <summary>
+        /// Mehrere Endpunkte in einem HTTP-Aufruf über /batch, z.B. Batch("/position", BlockStatusCall(p)).
+        /// Alle Aufrufe sehen denselben Tick. Liefert die Ergebnisse in derselben Reihenfolge;
+        /// schlägt ein Aufruf fehl, wird eine HttpRequestException geworfen.
+        /// </summary>
+        public List<JsonElement> Batch(params string[] calls)
+        {
+            var body = new StringContent(JsonSerializer.Serialize(calls), System.Text.Encoding.UTF8, "application/json");
+            var resp = _http.PostAsync($"{_base}/batch", body).Result;
+            resp.EnsureSuccessStatusCode();
+            using var doc = JsonDocument.Parse(resp.Content.ReadAsStringAsync().Result);
+            var results = new List<JsonElement>();
+            int i = 0;
+            foreach (var e in doc.RootElement.EnumerateArray())
+            {
+                if (e.GetProperty("status").GetInt32() != 200)
+                    throw new HttpRequestException($"{calls[i]}: {e.GetProperty("error").GetString()}");
+                results.Add(e.GetProperty("result").Clone());
+                i++;
+            }
+            return results;
+        }
+
         public Vec3Int GetNextBlock(string blockname, int r)
         {
             // ACHTUNG: .Result blockiert den Thread. Besser wäre es, die Funktion selbst async zu machen
@@ -273,7 +308,41 @@ namespace AzathothClient
             while (GetBlockStatus(p) != "minecraft:air") Thread.Sleep(50);
         }
 
-        public void DestroyBlock(Vec3Int p)
+        /// <summary>
+        /// Wartet serverseitig über /wait/block, bis an p der Block id steht (bzw. nicht mehr steht, wenn not).
+        /// Der Server prüft jeden Tick; false bei Zeitüberschreitung.
+        /// </summary>
+        public bool WaitForBlock(Vec3Int p, string id, bool not = false, int timeoutMs = 5000)
+        {
+            var cond = not ? "not" : "is";
+            var r = _http.GetStringAsync($"{_base}/wait/block?x={p.X}&y={p.Y}&z={p.Z}&{cond}={id}&timeout_ms={timeoutMs}").Result;
+            using var doc = JsonDocument.Parse(r);
+            return doc.RootElement.GetProperty("ok").GetBoolean();
+        }
+
+        public bool DestroyBlock(Vec3Int p, int timeoutMs = 10000)
+        {
+            var watch = System.Diagnostics.Stopwatch.StartNew();
+            // Blick setzen, Block prüfen und Abbau anstoßen zählen mit zum Zeitlimit
+            var start = Task.Run(() => StartBreaking(p));
+            if (!start.Wait(timeoutMs)) return false;
+            bool done = true;
+            if (start.Result)
+            {
+                // 3) Warten bis Luft (serverseitig, ohne Polling)
+                int left = (int)Math.Max(0, timeoutMs - watch.ElapsedMilliseconds);
+                done = WaitForBlock(p, "minecraft:air", timeoutMs: left);
+            }
+
+            Thread.Sleep(10);
+            //Console.WriteLine("  ✔ Block destroyed");
+            return done;
+        }
+
+        /// <summary>
+        /// Schaut auf p und stößt den Abbau an; false, wenn dort Wasser ist und nichts abgebaut wird.
+        /// </summary>
+        private bool StartBreaking(Vec3Int p)
         {
             // 1) Blick auf die Block-Mitte setzen
             var state = GetPlayerState();
@@ -301,41 +370,27 @@ namespace AzathothClient
 
             // 2) Block abbauen
             //Console.WriteLine($"  ▶ Breaking block at {p}");
-            if (!GetBlockStatus(p).Contains("water"))
-
-            {
-
-                _http.GetAsync($"{_base}/break_block?x={p.X}&y={p.Y}&z={p.Z}").Wait();
-
-                // 3) Warten bis Luft
-                while (GetBlockStatus(p) != "minecraft:air")
-                {
-                    Thread.Sleep(50);
-                }
-
-            }
-
-            Thread.Sleep(10);
-            //Console.WriteLine("  ✔ Block destroyed");
+            if (GetBlockStatus(p).Contains("water")) return false;
 
+            _http.GetAsync($"{_base}/break_block?x={p.X}&y={p.Y}&z={p.Z}").Wait();
+            return true;
         }
 
 
-        public void PlaceBlock(Vec3Int p, string block="minecraft:dirt")
+        public bool PlaceBlock(Vec3Int p, string block="minecraft:dirt", int timeoutMs = 5000)
         {
 
             //Console.WriteLine("placing Block! " + p.ToString());
-            _http.GetAsync($"{_base}/place_block?x={p.X}&y={p.Y}&z={p.Z}&block={block}".Replace(',', '.')).Wait();
-            while (GetBlockStatus(p) != block)
-            {
-                Thread.Sleep(50);
-            }
+            var watch = System.Diagnostics.Stopwatch.StartNew();
+            if (!_http.GetAsync($"{_base}/place_block?x={p.X}&y={p.Y}&z={p.Z}&block={block}".Replace(',', '.')).Wait(timeoutMs))
+                return false;
+            int left = (int)Math.Max(0, timeoutMs - watch.ElapsedMilliseconds);
+            return WaitForBlock(p, block, timeoutMs: left);
         }
 
         public bool timedPlaceBlock(Vec3Int p, string block)
         {
-            var task = Task.Run(() => PlaceBlock(p, block));
-            if (task.Wait(TimeSpan.FromSeconds(1)))
+            if (PlaceBlock(p, block, 1000))
                 return true;
             else
                 Console.WriteLine("placing timed out!");
@@ -344,8 +399,7 @@ namespace AzathothClient
 
         public bool timedBreakBlock(Vec3Int p)
         {
-            var task = Task.Run(() => DestroyBlock(p));
-            if (task.Wait(TimeSpan.FromSeconds(10)))
+            if (DestroyBlock(p, 10000))
                 return true;
             else
                 Console.WriteLine("breaking timed out!");
@@ -464,6 +518,90 @@ namespace AzathothClient
         }
 
 
+        /// <summary>
+        /// Eine Suche zu allen Blöcken vom Typ blockName im Umkreis searchRadius:
+        /// liefert den Pfad zum Block mit den geringsten Wegkosten (letzte Position = Ziel),
+        /// null, wenn der Server keinen erreichbaren Block findet (404), sonst bei Fehlern eine leere Liste.
+        /// </summary>
+        public List<Vec3Int> GetPathToNearest(string blockName, int radius = 256, int searchRadius = 128, int n = 64)
+        {
+            var st = GetPlayerState();
+            var query = new Dictionary<string, string>
+            {
+                ["sx"] = Math.Floor(st.X).ToString(),
+                ["sy"] = Math.Floor(st.Y).ToString(),
+                ["sz"] = Math.Floor(st.Z).ToString(),
+                ["block"] = blockName,
+                ["br"] = searchRadius.ToString(),
+                ["n"] = n.ToString(),
+                ["r"] = radius.ToString()
+            };
+            try
+            {
+                var response = _http.GetAsync($"{_base}/find_path_nearest?{ToQuery(query)}").Result;
+                if (response.StatusCode == HttpStatusCode.NotFound)
+                {
+                    Console.WriteLine("No reachable " + blockName + " found (404).");
+                    return null;
+                }
+                response.EnsureSuccessStatusCode();
+
+                using var doc = JsonDocument.Parse(response.Content.ReadAsStringAsync().Result);
+                var path = new List<Vec3Int>();
+                foreach (var el in doc.RootElement.GetProperty("positions").EnumerateArray())
+                    path.Add(new Vec3Int(el[0].GetInt32(), el[1].GetInt32(), el[2].GetInt32()));
+                return path;
+            }
+            catch (Exception ex)
+            {
+                Console.WriteLine($"Unexpected error in GetPathToNearest: {ex.Message}");
+                return new List<Vec3Int>();
+            }
+        }
+
+        /// <summary>
+        /// Wie GetPathTo, aber als komprimierte Segmente. Leere Liste, wenn kein Pfad gefunden wurde.
+        /// </summary>
+        public List<PathSegment> GetPathSegments(Vec3Int goal, int radius = 128)
+        {
+            var st = GetPlayerState();
+            var query = new Dictionary<string, string>
+            {
+                ["sx"] = Math.Floor(st.X).ToString(),
+                ["sy"] = Math.Floor(st.Y).ToString(),
+                ["sz"] = Math.Floor(st.Z).ToString(),
+                ["gx"] = goal.X.ToString(),
+                ["gy"] = goal.Y.ToString(),
+                ["gz"] = goal.Z.ToString(),
+                ["r"] = radius.ToString(),
+                ["format"] = "compact"
+            };
+            try
+            {
+                var response = _http.GetAsync($"{_base}/find_path?{ToQuery(query)}").Result;
+                if (response.StatusCode == HttpStatusCode.NotFound)
+                {
+                    Console.WriteLine("No path found (404).");
+                    return new List<PathSegment>();
+                }
+                response.EnsureSuccessStatusCode();
+
+                using var doc = JsonDocument.Parse(response.Content.ReadAsStringAsync().Result);
+                var segments = new List<PathSegment>();
+                foreach (var el in doc.RootElement.GetProperty("segments").EnumerateArray())
+                {
+                    var end = new Vec3Int(el.GetProperty("x").GetInt32(), el.GetProperty("y").GetInt32(), el.GetProperty("z").GetInt32());
+                    segments.Add(new PathSegment(end, el.GetProperty("n").GetInt32(), el.GetProperty("action").GetString()));
+                }
+                return segments;
+            }
+            catch (Exception ex)
+            {
+                Console.WriteLine($"Unexpected error in GetPathSegments: {ex.Message}");
+                return new List<PathSegment>();
+            }
+        }
+
         public List<Vec3Int> GetPathTo_old(Vec3Int goal, int radius = 128)
         {
             Console.WriteLine("getting Path...");
@@ -500,6 +638,61 @@ namespace AzathothClient
             return new List<Vec3Int>();
         }
 
+        /// <summary>
+        /// Startet für jedes Kandidatenziel einen /path_jobs-Job und nimmt den ersten gefundenen Pfad.
+        /// Die übrigen Jobs werden danach abgebrochen.
+        /// </summary>
+        public List<Vec3Int> GetPathToFirst(List<Vec3Int> goals, int radius = 128, int budgetMs = 5000)
+        {
+            var st = GetPlayerState();
+            var ids = new List<long>();
+            foreach (var goal in goals)
+            {
+                var query = new Dictionary<string, string>
+                {
+                    ["sx"] = Math.Floor(st.X).ToString(),
+                    ["sy"] = Math.Floor(st.Y).ToString(),
+                    ["sz"] = Math.Floor(st.Z).ToString(),
+                    ["gx"] = goal.X.ToString(),
+                    ["gy"] = goal.Y.ToString(),
+                    ["gz"] = goal.Z.ToString(),
+                    ["r"] = radius.ToString(),
+                    ["budget_ms"] = budgetMs.ToString()
+                };
+                var resp = _http.GetAsync($"{_base}/path_jobs/submit?{ToQuery(query)}").Result;
+                if (!resp.IsSuccessStatusCode) continue;
+                using var doc = JsonDocument.Parse(resp.Content.ReadAsStringAsync().Result);
+                ids.Add(doc.RootElement.GetProperty("id").GetInt64());
+            }
+
+            var path = new List<Vec3Int>();
+            var open = new List<long>(ids);
+            while (open.Count > 0 && path.Count == 0)
+            {
+                Thread.Sleep(50);
+                foreach (var id in open.ToArray())
+                {
+                    var resp = _http.GetAsync($"{_base}/path_jobs/poll?id={id}").Result;
+                    if (!resp.IsSuccessStatusCode) { open.Remove(id); continue; }
+                    using var doc = JsonDocument.Parse(resp.Content.ReadAsStringAsync().Result);
+                    var root = doc.RootElement;
+                    string state = root.GetProperty("state").GetString();
+                    if (state == "queued" || state == "running") continue;
+                    open.Remove(id);
+                    if (state == "found")
+                    {
+                        foreach (var el in root.GetProperty("path").GetProperty("positions").EnumerateArray())
+                            path.Add(new Vec3Int(el[0].GetInt32(), el[1].GetInt32(), el[2].GetInt32()));
+                        break;
+                    }
+                }
+            }
+
+            foreach (var id in open)
+                _http.GetAsync($"{_base}/path_jobs/cancel?id={id}").Wait();
+            return path;
+        }
+
         private static string ToQuery(Dictionary<string, string> p)
         {
             var list = new List<string>();
@@ -580,6 +773,47 @@ namespace AzathothClient
             return finished;
         }
 
+        /// <summary>
+        /// Läuft einen komprimierten Pfad ab. Ebene "walk"-Läufe werden in einem Zug bis zum
+        /// Segmentende gelaufen, ohne Blockabfragen; alle anderen Segmente Block für Block wie in Goto.
+        /// </summary>
+        public bool GotoSegments(List<PathSegment> segments)
+        {
+            var now = DateTime.UtcNow;
+            var state = GetPlayerState();
+            var cur = new Vec3Int((int)Math.Floor(state.X), (int)Math.Floor(state.Y), (int)Math.Floor(state.Z));
+            foreach (var seg in segments)
+            {
+                int dx = (seg.End.X - cur.X) / seg.N, dy = (seg.End.Y - cur.Y) / seg.N, dz = (seg.End.Z - cur.Z) / seg.N;
+                if (seg.Action == "walk" && dy == 0)
+                {
+                    HorizontalPhase(seg.End.X + 0.5, seg.End.Z + 0.5, 0.01, DateTime.UtcNow);
+                    SetVelocity(0, 0, 0);
+                }
+                else
+                {
+                    for (int i = 1; i <= seg.N; i++)
+                        MoveToBlockCenter(new Vec3Int(cur.X + dx * i, cur.Y + dy * i, cur.Z + dz * i));
+                }
+                cur = seg.End;
+
+                state = GetPlayerState();
+                var actual = new Vec3Int((int)Math.Floor(state.X), (int)Math.Floor(state.Y), (int)Math.Floor(state.Z));
+                if (actual != cur)
+                {
+                    Console.WriteLine($"  ▶ Segment end {cur} not reached (at {actual})");
+                    return false;
+                }
+                if ((DateTime.UtcNow - now).TotalSeconds > Math.Max(15, segments.Count * 200))
+                {
+                    Console.WriteLine("goto timed out..." + (DateTime.UtcNow - now).TotalSeconds.ToString());
+                    return false;
+                }
+            }
+            Console.WriteLine("==> All segments reached!");
+            return true;
+        }
+
         private void MoveToBlockCenter_old(Vec3Int target)
         {
             // Mitte des Zielblocks
@@ -643,8 +877,16 @@ namespace AzathothClient
             const double tolH = 0.01, tolV = 0.01;
             var overallStart = DateTime.UtcNow;
 
+            var head = new Vec3Int(target.X, target.Y + 1, target.Z);
+            var head2 = new Vec3Int(target.X, target.Y + 2, target.Z);
+            var blk = new Vec3Int(target.X, target.Y, target.Z);
+            var below = new Vec3Int(target.X, target.Y - 1, target.Z);
+
+            // Position und die vier Blöcke in einem Aufruf holen; gilt nur bis zum ersten Abbau
+            var r = Batch("/position", BlockStatusCall(head), BlockStatusCall(head2), BlockStatusCall(blk), BlockStatusCall(below));
+
             // Aktuelle Block-Pos
-            var s0 = GetPlayerState();
+            var s0 = ToVec3(r[0]);
             var curBlock = new Vec3Int(
                 (int)Math.Floor(s0.X),
                 (int)Math.Floor(s0.Y),
@@ -658,16 +900,14 @@ namespace AzathothClient
                 target.Y == curBlock.Y + 1;
 
             // 1) Hindernisse räumen & Boden legen
-            var head = new Vec3Int(target.X, target.Y + 1, target.Z);
-            if (GetBlockStatus(head) != "minecraft:air") timedBreakBlock(head);
-            var head2 = new Vec3Int(target.X, target.Y + 2, target.Z);
-            if (GetBlockStatus(head2) != "minecraft:air") timedBreakBlock(head2);
-
-            var blk = new Vec3Int(target.X, target.Y, target.Z);
-            if (GetBlockStatus(blk) != "minecraft:air") timedBreakBlock(blk);
-
-            var below = new Vec3Int(target.X, target.Y - 1, target.Z);
-            if (GetBlockStatus(below) == "minecraft:air")
+            // Nach einem Abbau können Blöcke nachrutschen (Sand, Kies): ab dann jeden Block neu abfragen
+            bool broken = false;
+            string Status(int i, Vec3Int p) => broken ? GetBlockStatus(p) : r[i].GetProperty("block").GetString();
+            if (Status(1, head) != "minecraft:air") { timedBreakBlock(head); broken = true; }
+            if (Status(2, head2) != "minecraft:air") { timedBreakBlock(head2); broken = true; }
+            if (Status(3, blk) != "minecraft:air") { timedBreakBlock(blk); broken = true; }
+
+            if (Status(4, below) == "minecraft:air")
             {
                 // Wenn wir nur genau hochbauen, fliegen wir über VerticalPhase vorab auf ty:
                 if (isDirectlyAbove)
@@ -951,50 +1191,32 @@ namespace AzathothClient
 
         public bool mine(string blockname, int maxTrys = 10)
         {
-
-            int pathIndex = 0; //welches result versuchen wir zu pathfinden
-            var results = GetNextBlocksSorted(blockname, 128, maxTrys);
-            int trys = 0;
-
-            while (true)
+            // Eine Multi-Ziel-Suche statt einer Pfadsuche pro Kandidat: der Server wählt
+            // den Block mit den geringsten Wegkosten.
+            for (int trys = 0; trys < maxTrys; trys++)
             {
-                //abbauen versuchen
-                var path = GetPathTo(results[pathIndex], 256);
-                if (path.Count > 0)
+                var path = GetPathToNearest(blockname, 256, 128);
+                if (path == null)
                 {
-                    //az.Goto(path);
-                    Console.WriteLine("Managed to find path towards: " + results[pathIndex].ToString());
-                    bool geklappt = Goto(path);
-                    if (geklappt)
-                    {
-                        Console.WriteLine("goal reached, mine finished in try: " + trys.ToString());
-                        return true;
-                    }
-                    else
-                    {
-                        Console.WriteLine("goal NOT reached, in try: " + trys.ToString());
-                        results = GetNextBlocksSorted(blockname, 128, maxTrys);
-                        pathIndex = 0;
-
-
-                    }
+                    // 404: nichts Erreichbares in Reichweite, ein neuer Versuch sieht dieselbe Welt
+                    Console.WriteLine("no reachable " + blockname + ", giving up after try: " + trys.ToString());
+                    return false;
                 }
-                else
+                if (path.Count == 0)
                 {
-                    Console.WriteLine("failed to find path towards: " + results[pathIndex].ToString() + " try: " + trys.ToString());
-                    pathIndex++;
-                    trys++;
+                    Console.WriteLine("failed to find path towards any " + blockname + " try: " + trys.ToString());
+                    continue;
                 }
-
-
-                if (trys >= maxTrys)
+                Console.WriteLine("Managed to find path towards: " + path[path.Count - 1].ToString());
+                if (Goto(path))
                 {
-                    Console.WriteLine("Max try limit exceedet in mining: " + blockname);
-                    return false;
+                    Console.WriteLine("goal reached, mine finished in try: " + trys.ToString());
+                    return true;
                 }
+                Console.WriteLine("goal NOT reached, in try: " + trys.ToString());
             }
-
-
+            Console.WriteLine("Max try limit exceedet in mining: " + blockname);
+            return false;
         }
 
         /// <summary>
@@ -0,0 +1,213 @@
+package name.azathoth;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Antwortkörper, der direkt beschrieben wird (z.B. von einem JsonWriter).
+ * Bis {@link #BUFFER_SIZE} Bytes wird in einem Puffer aus einem kleinen Pool gesammelt und beim
+ * Schließen mit Content-Length gesendet; wird es mehr, gehen die Header mit Chunked Transfer raus
+ * und der Rest wird durchgereicht. Große Antworten liegen so nie vollständig im Speicher.
+ * <p>
+ * Ab compressMin Bytes wird mit gzip bzw. deflate komprimiert, falls der Client es per
+ * Accept-Encoding anbietet (schnellste Stufe, die Antworten sind sehr redundant). In beiden
+ * Fällen ist die Länge eindeutig, die Verbindung kann also für die nächste Anfrage offen bleiben.
+ */
+final class ResponseStream extends OutputStream {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 16;
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private final HttpExchange ex;
+    private final int status;
+    private final int compressMin;
+    private final HttpMetrics metrics;
+    private final String encoding; // null: Client will keine Kompression
+    private byte[] buf;
+    private int len;
+    private long raw;
+    private CountingStream sent; // gesetzt, sobald auf Chunked umgeschaltet wurde
+    private OutputStream body;
+    private boolean compressed;
+    private boolean closed;
+
+    ResponseStream(HttpExchange ex, int status, int compressMin, HttpMetrics metrics) {
+        this.ex = ex;
+        this.status = status;
+        this.compressMin = compressMin;
+        this.metrics = metrics;
+        this.encoding = negotiate(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+        byte[] b = pool.poll();
+        if (b != null) pooled.decrementAndGet();
+        this.buf = b != null ? b : new byte[BUFFER_SIZE];
+    }
+
+    /** gzip vor deflate; q=0 heißt abgelehnt. */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) return null;
+        boolean gzip = false, deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] p = part.trim().split(";");
+            String name = p[0].trim().toLowerCase();
+            boolean refused = p.length > 1 && p[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            if (refused) continue;
+            if (name.equals("gzip") || name.equals("*")) gzip = true;
+            else if (name.equals("deflate")) deflate = true;
+        }
+        return gzip ? "gzip" : deflate ? "deflate" : null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        raw++;
+        if (body == null && len == buf.length) startChunked();
+        if (body != null) body.write(b);
+        else buf[len++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int n) throws IOException {
+        raw += n;
+        if (body == null && len + n > buf.length) startChunked();
+        if (body != null) {
+            body.write(b, off, n);
+            return;
+        }
+        System.arraycopy(b, off, buf, len, n);
+        len += n;
+    }
+
+    private void startChunked() throws IOException {
+        // was nicht in den Puffer passt, gilt immer als groß genug für Kompression
+        compressed = encoding != null;
+        if (compressed) setEncodingHeaders();
+        ex.sendResponseHeaders(status, 0);
+        sent = new CountingStream(ex.getResponseBody());
+        body = compressed ? compressor(sent) : sent;
+        body.write(buf, 0, len);
+        release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (body == null) {
+                byte[] data = buf;
+                int n = len;
+                if (encoding != null && len >= compressMin) {
+                    ByteArrayOutputStream packed = new ByteArrayOutputStream(len / 4);
+                    try (OutputStream z = compressor(packed)) {
+                        z.write(buf, 0, len);
+                    }
+                    if (packed.size() < len) {
+                        compressed = true;
+                        data = packed.toByteArray();
+                        n = data.length;
+                        setEncodingHeaders();
+                    }
+                }
+                ex.sendResponseHeaders(status, n == 0 ? -1 : n);
+                sent = new CountingStream(ex.getResponseBody());
+                body = sent;
+                body.write(data, 0, n);
+                body.close();
+                if (metrics != null) metrics.record(ex.getHttpContext().getPath(), raw, sent.count, compressed ? encoding : null, false);
+                return;
+            }
+            body.close();
+            if (metrics != null) metrics.record(ex.getHttpContext().getPath(), raw, sent.count, compressed ? encoding : null, true);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Bricht die Antwort ab, z.B. wenn die Serialisierung fehlschlägt. Solange noch nichts gesendet
+     * wurde, geht nichts raus und der Aufrufer kann einen Fehler melden; sonst wird die Verbindung
+     * mitten im Chunked-Körper geschlossen, der Client sieht eine unvollständige Antwort.
+     * Auch nach einem gescheiterten {@link #close} aufrufbar: Kompressions-Header, die schon gesetzt
+     * waren, werden dann wieder entfernt, damit die Fehlermeldung nicht als gzip ausgezeichnet ist.
+     */
+    void abort() {
+        if (!closed) {
+            closed = true;
+            release();
+            if (body != null) ex.close();
+        }
+        if (body == null) {
+            ex.getResponseHeaders().remove("Content-Encoding");
+            ex.getResponseHeaders().remove("Vary");
+        }
+    }
+
+    /** Ob Header und erste Daten schon gesendet wurden. */
+    boolean isCommitted() {
+        return body != null;
+    }
+
+    private void setEncodingHeaders() {
+        ex.getResponseHeaders().set("Content-Encoding", encoding);
+        ex.getResponseHeaders().add("Vary", "Accept-Encoding");
+    }
+
+    private OutputStream compressor(OutputStream out) throws IOException {
+        if (encoding.equals("gzip")) {
+            return new GZIPOutputStream(out, 8192) {
+                { def.setLevel(Deflater.BEST_SPEED); }
+            };
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        return new DeflaterOutputStream(out, deflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private void release() {
+        if (buf == null) return;
+        if (pooled.incrementAndGet() <= POOL_SIZE) pool.offer(buf);
+        else pooled.decrementAndGet();
+        buf = null;
+        len = 0;
+    }
+
+    /** Zählt die tatsächlich gesendeten Bytes für {@link HttpMetrics}. */
+    private static final class CountingStream extends FilterOutputStream {
+        long count;
+
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            out.write(b, off, n);
+            count += n;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package qwermotion.azathoth;
+
+/**
+ * Steuerung und Fortschritt einer laufenden Suche.
+ * Die Suche prüft alle paar hundert Iterationen, ob abgebrochen wurde oder die
+ * Deadline überschritten ist, und veröffentlicht dabei ihre Zähler.
+ * Die Felder werden nur vom Such-Thread geschrieben und dürfen von beliebigen
+ * Threads gelesen werden.
+ */
+public final class SearchControl {
+    /** Prüfintervall in Iterationen (Zweierpotenz - 1). */
+    static final int CHECK_MASK = 0xFF;
+
+    private final long deadline;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+    private volatile long expanded;
+    private volatile double frontierF = Double.POSITIVE_INFINITY;
+    private volatile double bestH = Double.POSITIVE_INFINITY;
+
+    private SearchControl(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /** Ohne Zeitlimit, nur abbrechbar. */
+    public static SearchControl unbounded() {
+        return new SearchControl(Long.MAX_VALUE);
+    }
+
+    public static SearchControl withBudget(long budgetMillis) {
+        return new SearchControl(System.nanoTime() + budgetMillis * 1_000_000L);
+    }
+
+    public void cancel() { cancelled = true; }
+
+    public boolean isCancelled() { return cancelled; }
+    public boolean isTimedOut() { return timedOut; }
+
+    /** Anzahl expandierter Knoten. */
+    public long expanded() { return expanded; }
+
+    /** f des besten Knotens der Open-List beim letzten Prüfpunkt. */
+    public double frontierF() { return frontierF; }
+
+    /** Kleinste bisher erreichte Heuristik, also die größte Annäherung ans Ziel. */
+    public double bestH() { return bestH; }
+
+    /** Veröffentlicht nur die Zähler, z.B. am Ende der Suche. */
+    void report(long expanded, double frontierF, double bestH) {
+        this.expanded = expanded;
+        this.frontierF = frontierF;
+        this.bestH = bestH;
+    }
+
+    /** Wird vom Such-Thread aufgerufen; true heißt: Suche beenden. */
+    boolean checkpoint(long expanded, double frontierF, double bestH) {
+        report(expanded, frontierF, bestH);
+        if (cancelled) return true;
+        if (deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+            timedOut = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,158 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Kopie der Block-Container aller Sections in der Such-Raute um einen Startpunkt.
+ * Muss auf dem Client-Thread erzeugt werden; danach kann ein Worker-Thread
+ * beliebig lange dagegen suchen, ohne die Live-Welt anzufassen.
+ * Kopiert wird nur der palettierte Container (Palette + gepackte Indizes), nicht 4096 States.
+ */
+public final class SectionSnapshot implements CostGrid.Sampler {
+    /**
+     * Größter Radius, mit dem {@link #capture}/{@link #captureCube} kopieren; weiter reicht auch
+     * die größte Sichtweite (32 Chunks) nicht. Größere Radien werden darauf begrenzt, damit eine
+     * Anfrage den Client-Thread nicht mit einer riesigen Schleife aufhält.
+     */
+    public static final int MAX_RADIUS = 512;
+
+    private final LongIndexMap index;
+    private final List<PalettedContainer<BlockState>> containers;
+
+    private SectionSnapshot(LongIndexMap index, List<PalettedContainer<BlockState>> containers) {
+        this.index = index;
+        this.containers = containers;
+    }
+
+    /** Kopiert alle geladenen, nicht leeren Sections, die die Raute um center schneiden. */
+    public static SectionSnapshot capture(World world, BlockPos center, int radius) {
+        return capture(world, center, radius, false, null);
+    }
+
+    /** Wie {@link #capture}, aber für den Würfel mit Kantenlänge 2·radius+1 (Block-Scans). */
+    public static SectionSnapshot captureCube(World world, BlockPos center, int radius) {
+        return capture(world, center, radius, true, null);
+    }
+
+    /**
+     * Wie {@link #captureCube}, kopiert aber nur Sections, deren Palette einen passenden State
+     * enthält. Sections mit globaler Palette werden immer kopiert.
+     */
+    public static SectionSnapshot captureCube(World world, BlockPos center, int radius, Predicate<BlockState> filter) {
+        return capture(world, center, radius, true, filter);
+    }
+
+    private static SectionSnapshot capture(World world, BlockPos center, int radius, boolean cube,
+                                           Predicate<BlockState> filter) {
+        radius = Math.max(0, Math.min(radius, MAX_RADIUS));
+        LongIndexMap index = new LongIndexMap(256);
+        List<PalettedContainer<BlockState>> containers = new ArrayList<>();
+        int cx = center.getX(), cy = center.getY(), cz = center.getZ();
+        int minSy = Math.max(world.getBottomSectionCoord(), (cy - radius) >> 4);
+        int maxSy = Math.min(world.getTopSectionCoord() - 1, (cy + radius) >> 4);
+        for (int sx = (cx - radius) >> 4; sx <= (cx + radius) >> 4; sx++) {
+            for (int sz = (cz - radius) >> 4; sz <= (cz + radius) >> 4; sz++) {
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(sx, sz, false);
+                if (chunk == null) continue;
+                ChunkSection[] sections = chunk.getSectionArray();
+                for (int sy = minSy; sy <= maxSy; sy++) {
+                    if (!cube && dist(cx, sx) + dist(cy, sy) + dist(cz, sz) > radius) continue;
+                    ChunkSection section = sections[world.sectionCoordToIndex(sy)];
+                    if (section == null || section.isEmpty()) continue;
+                    if (filter != null && !section.getBlockStateContainer().hasAny(filter)) continue;
+                    index.put(PackedPos.pack(sx, sy, sz), containers.size());
+                    containers.add(section.getBlockStateContainer().copy());
+                }
+            }
+        }
+        return new SectionSnapshot(index, containers);
+    }
+
+    /** Kopiert nur die angegebenen Sections (Schlüssel aus {@link PackedPos#pack}), z.B. für Deltas. */
+    public static SectionSnapshot captureSections(World world, long[] keys) {
+        return captureSections(world, keys, null);
+    }
+
+    /** Wie {@link #captureSections(World, long[])}, aber nur Sections, deren Palette filter erfüllen kann. */
+    public static SectionSnapshot captureSections(World world, long[] keys, Predicate<BlockState> filter) {
+        LongIndexMap index = new LongIndexMap(Math.max(16, keys.length));
+        List<PalettedContainer<BlockState>> containers = new ArrayList<>();
+        for (long key : keys) {
+            int sx = PackedPos.x(key), sy = PackedPos.y(key), sz = PackedPos.z(key);
+            if (sy < world.getBottomSectionCoord() || sy >= world.getTopSectionCoord()) continue;
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(sx, sz, false);
+            if (chunk == null) continue;
+            ChunkSection section = chunk.getSectionArray()[world.sectionCoordToIndex(sy)];
+            if (section == null || section.isEmpty()) continue;
+            if (filter != null && !section.getBlockStateContainer().hasAny(filter)) continue;
+            index.put(key, containers.size());
+            containers.add(section.getBlockStateContainer().copy());
+        }
+        return new SectionSnapshot(index, containers);
+    }
+
+    private static int dist(int c, int section) {
+        int min = section << 4;
+        return c < min ? min - c : Math.max(0, c - (min + 15));
+    }
+
+    public int sectionCount() { return containers.size(); }
+
+    /** Schlüssel ({@link PackedPos#pack} der Section-Koordinaten) aller kopierten Sections. */
+    public long[] sectionKeys() {
+        return index.keysByValue();
+    }
+
+    /** Container der Section mit Schlüssel key, null wenn sie nicht kopiert wurde. */
+    PalettedContainer<BlockState> section(long key) {
+        int id = index.get(key);
+        return id < 0 ? null : containers.get(id);
+    }
+
+    /** Block an (x, y, z); außerhalb der kopierten Sections Luft, wie bei leeren Sections. */
+    public BlockState getBlockState(int x, int y, int z) {
+        int id = index.get(PackedPos.pack(x >> 4, y >> 4, z >> 4));
+        if (id < 0) return Blocks.AIR.getDefaultState();
+        return containers.get(id).get(x & 15, y & 15, z & 15);
+    }
+
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public void sample(int sx, int sy, int sz, byte[] flags, byte[] hardness) {
+        int id = index.get(PackedPos.pack(sx, sy, sz));
+        if (id < 0) {
+            Arrays.fill(flags, CostGrid.EMPTY_FLAGS);
+            return;
+        }
+        PalettedContainer<BlockState> container = containers.get(id);
+        BlockCostTable table = BlockCostTable.current();
+        BlockState last = null;
+        int cell = 0;
+        for (int y = 0; y < 16; y++)
+            for (int z = 0; z < 16; z++)
+                for (int x = 0; x < 16; x++) {
+                    BlockState bs = container.get(x, y, z);
+                    if (bs != last) {
+                        last = bs;
+                        cell = table.cell(bs);
+                    }
+                    int i = (y << 8) | (z << 4) | x;
+                    flags[i] = (byte) cell;
+                    hardness[i] = (byte) (cell >> 8);
+                }
+    }
+}
@@ -0,0 +1,66 @@
+package qwermotion.azathoth;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monoton steigende Versionsnummer pro Chunk-Section für Delta-Schnappschüsse.
+ * Jede Änderung zieht den nächsten Wert einer gemeinsamen Uhr; Sections ohne eigenen Eintrag
+ * stehen auf dem Boden ({@link #floor}). Wer sich {@link #current()} merkt, bekommt später mit
+ * {@link #changedSince} alle Sections, die sich seitdem geändert haben.
+ * <p>
+ * Gemerkt werden nur geladene Chunks: {@link #dropColumn} vergisst eine entladene Spalte und
+ * hebt dafür den Boden an, sodass sie (wie alle anderen Sections ohne Eintrag) als geändert gilt.
+ *
+ * Geändert wird nur vom Client-Thread, gelesen von beliebigen Threads.
+ */
+public final class SectionVersions {
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long floor;
+    private volatile long validFrom;
+
+    public long current() { return clock.get(); }
+
+    /** Version aller Sections ohne eigenen Eintrag. */
+    public long floor() { return floor; }
+
+    public int size() { return versions.size(); }
+
+    public void bump(int sx, int sy, int sz) {
+        versions.put(PackedPos.pack(sx, sy, sz), clock.incrementAndGet());
+    }
+
+    /** Chunk geladen: alle Sections der Spalte bekommen dieselbe neue Version. */
+    public void bumpColumn(int cx, int cz, int minSy, int maxSy) {
+        long v = clock.incrementAndGet();
+        for (int sy = minSy; sy <= maxSy; sy++) versions.put(PackedPos.pack(cx, sy, cz), v);
+    }
+
+    /** Chunk entladen: die Einträge der Spalte fallen weg, der Boden steigt auf eine neue Version. */
+    public void dropColumn(int cx, int cz, int minSy, int maxSy) {
+        for (int sy = minSy; sy <= maxSy; sy++) versions.remove(PackedPos.pack(cx, sy, cz));
+        // erst danach die Uhr ziehen: wer current() vorher gelesen hat, sieht die Spalte beim nächsten Mal als geändert
+        floor = clock.incrementAndGet();
+    }
+
+    public long version(int sx, int sy, int sz) {
+        return versions.getOrDefault(PackedPos.pack(sx, sy, sz), floor);
+    }
+
+    public boolean changedSince(int sx, int sy, int sz, long since) {
+        return version(sx, sy, sz) > since;
+    }
+
+    /** Ob ein Delta gegen since möglich ist; sonst braucht der Client einen vollständigen Schnappschuss. */
+    public boolean isValid(long since) {
+        return since >= validFrom && since <= clock.get();
+    }
+
+    /** Alles gilt als geändert, z.B. nach Welt- oder Dimensionswechsel. */
+    public void reset() {
+        versions.clear();
+        floor = validFrom = clock.incrementAndGet();
+    }
+}
@@ -5,19 +5,23 @@ import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.minecraft.block.Blocks;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
-import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.entity.EntityType;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.mob.MobEntity;
-import net.minecraft.entity.passive.AnimalEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.registry.Registries;
 import net.minecraft.util.Hand;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
@@ -26,79 +30,499 @@ import net.minecraft.block.BlockState;
 import net.minecraft.util.math.Box;
 import net.minecraft.world.World;
 import net.minecraft.item.BlockItem;
-
+import qwermotion.azathoth.BlockCostTable;
+import qwermotion.azathoth.BlockIndex;
+import qwermotion.azathoth.BlockSearch;
+import qwermotion.azathoth.CostGrid;
+import qwermotion.azathoth.HierarchicalPathfinder;
+import qwermotion.azathoth.PathCache;
+import qwermotion.azathoth.PathCodec;
+import qwermotion.azathoth.PathJobs;
+import qwermotion.azathoth.PathSessions;
+import qwermotion.azathoth.SearchControl;
+import qwermotion.azathoth.PackedPos;
+import qwermotion.azathoth.SectionSnapshot;
+import qwermotion.azathoth.SectionVersions;
+import qwermotion.azathoth.SnapshotCodec;
+import qwermotion.azathoth.SnapshotSampler;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 
 
 public class SimpleHttpServer {
     private final HttpServer server;
     private final Gson gson = new Gson();
+    private final PathJobs pathJobs = new PathJobs();
+    private final PathSessions pathSessions = new PathSessions();
+    private final PathCache pathCache = new PathCache();
+    private volatile World pathCacheWorld;
+    private HierarchicalPathfinder hierarchical;
+    private World hierarchicalWorld;
+    private int hierarchicalVersion;
+    private WorldChangeTracker.Listener hierarchicalListener;
+    /** Über {@link #route} registrierte Endpunkte, für /batch. */
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private static final int MAX_BATCH = 256;
+    private static final int MAX_NEXT_BLOCKS = 4096;
+    /** Größter Suchradius für Block-Suchen; weiter reicht keine Kopie, siehe SectionSnapshot.MAX_RADIUS. */
+    private static final int MAX_BLOCK_RADIUS = SectionSnapshot.MAX_RADIUS;
+    /**
+     * Größter Radius r für Pfadsuchen mit Kopie um den Start; größere Werte werden mit 400
+     * abgelehnt, bevor der Client-Thread kopiert. Weitere Wege über /find_path_long.
+     */
+    private static final int MAX_PATH_RADIUS = 256;
+    /** Standard für -Dazathoth.index.blocks: Blöcke, nach denen ständig gesucht wird. */
+    private static final String DEFAULT_INDEXED_BLOCKS = "minecraft:iron_ore,minecraft:deepslate_iron_ore,"
+            + "minecraft:coal_ore,minecraft:deepslate_coal_ore,minecraft:oak_log";
+    /** So lange wartet eine Anfrage höchstens auf ausstehende Index-Änderungen, sonst wird gescannt. */
+    private static final long INDEX_FLUSH_MS = 200;
+    private final BlockIndexer blockIndexer;
+    private final TelemetryStream telemetry;
+    private final TickWaiters waiters = new TickWaiters();
+    private final BlockBreaker breaker = new BlockBreaker();
+    /** Standardfrist für /break_block (timeout_ms); höchstens {@link #MAX_WAIT_MS}. */
+    private static final long DEFAULT_BREAK_MS = 10_000;
+    private final SectionVersions sectionVersions = new SectionVersions();
+    private World versionsWorld;
+    private static final long MAX_WAIT_MS = 60_000;
+    /** Zählt Client-Ticks; wie der Cache darunter nur auf dem Client-Thread benutzt. */
+    private long clientTick;
+    /** Am Ende jedes Ticks neu veröffentlicht, null ohne Spieler; Lese-Endpunkte lesen nur hier. */
+    private volatile GameState state;
+    private final Map<String, CachedResponse> responseCache = new ConcurrentHashMap<>();
+    /** Antworten ab dieser Größe werden komprimiert, wenn der Client gzip/deflate annimmt (-Dazathoth.http.compress_min). */
+    private final int compressMin = Math.min(ResponseStream.BUFFER_SIZE,
+            Math.max(0, Integer.getInteger("azathoth.http.compress_min", 8192)));
+    private final HttpMetrics httpMetrics = new HttpMetrics();
+    private static final int MAX_CACHED_RESPONSES = 256;
+    private final Map<String, List<EntityInfo>> entitiesCache = new HashMap<>();
+    private long entitiesCacheTick = -1;
 
     public SimpleHttpServer() throws IOException {
         server = HttpServer.create(new InetSocketAddress(8080), 0);
+        WorldChangeTracker.addListener(new WorldChangeTracker.Listener() {
+            @Override
+            public void onBlockChanged(World w, BlockPos pos, BlockState state) {
+                // erst die Version, dann den Cache, siehe PathCache.putIfUnchanged
+                sectionVersionsFor(w).bump(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+                if (w == pathCacheWorld) pathCache.onSectionChanged(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            }
 
-        server.createContext("/position", this::handlePosition);
-        server.createContext("/inventory", this::handleInventory);
-        server.createContext("/world_items", this::handleWorldItems);
+            @Override
+            public void onChunkChanged(World w, int cx, int cz, boolean loaded) {
+                SectionVersions versions = sectionVersionsFor(w);
+                if (loaded) versions.bumpColumn(cx, cz, w.getBottomSectionCoord(), w.getTopSectionCoord() - 1);
+                else versions.dropColumn(cx, cz, w.getBottomSectionCoord(), w.getTopSectionCoord() - 1);
+                if (w == pathCacheWorld) pathCache.onChunkChanged(cx, cz, w.getBottomSectionCoord(), w.getTopSectionCoord() - 1);
+            }
+        });
+
+        blockIndexer = new BlockIndexer(parseBlocks(System.getProperty("azathoth.index.blocks", DEFAULT_INDEXED_BLOCKS)));
+        WorldChangeTracker.addListener(blockIndexer);
+
+        stateRoute("/state", this::gameState);
+        stateRoute("/position", this::position);
+        stateRoute("/inventory", this::inventory);
+        route("/world_items", this::worldItems);
         server.createContext("/world_snapshot", this::handleWorldSnapshot);
-        server.createContext("/next_block", this::handleNextBlock);
-        server.createContext("/entities", this::handleEntities);
-        server.createContext("/looking_block", this::handleLookingBlock);
-        server.createContext("/forward", this::handleForward);
-        server.createContext("/look", this::handleLook);
-        server.createContext("/jump",    this::handleJump);
-        server.createContext("/place_block", this::handlePlaceBlock);
-        server.createContext("/break_block", this::handleBreakBlock);
-        server.createContext("/block_status", this::handleBlockStatus);
+        server.createContext("/next_block", ex -> handleNextBlocks(ex, true));
+        server.createContext("/next_blocks", ex -> handleNextBlocks(ex, false));
+        route("/entities", this::entities);
+        stateRoute("/looking_block", this::lookingBlock);
+        route("/forward", this::forward);
+        route("/look", this::look);
+        route("/jump",    this::jump);
+        route("/place_block", this::placeBlock);
+        route("/break_block", this::breakBlock);
+        route("/break_block/cancel", this::cancelBreak);
+        route("/block_status", this::blockStatus);
+        server.createContext("/batch", this::handleBatch);
+
+        // Push statt Polling: /stream?channels=position,looking_block&every=2
+        Map<String, Function<Map<String, String>, Object>> channels = new LinkedHashMap<>();
+        channels.put("position", p -> position(currentState(), p));
+        channels.put("inventory", p -> inventory(currentState(), p));
+        channels.put("looking_block", p -> lookingBlock(currentState(), p));
+        channels.put("entities", this::entities);
+        channels.put("world_items", this::worldItems);
+        telemetry = new TelemetryStream(channels, gson);
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            clientTick++;
+            state = GameState.capture(client, clientTick, state);
+            breaker.tick(client);
+            telemetry.tick();
+            waiters.tick();
+        });
+        server.createContext("/stream", ex -> telemetry.serve(ex, parseQuery(ex.getRequestURI())));
+        server.createContext("/wait", this::handleWait);
         server.createContext("/find_path",      this::handleFindPath);
         server.createContext("/visualize_path", this::handleVisualizePath);
-        server.createContext("/set_velocity", this::handleSetVelocity);
-
-        server.setExecutor(null);
+        server.createContext("/path_jobs",      this::handlePathJobs);
+        server.createContext("/path_session",   this::handlePathSession);
+        server.createContext("/find_path_long", this::handleFindPathLong);
+        server.createContext("/find_path_nearest", this::handleFindPathNearest);
+        server.createContext("/path_cache",     this::handlePathCache);
+        server.createContext("/block_index",    this::handleBlockIndex);
+        server.createContext("/http_metrics",   this::handleHttpMetrics);
+        server.createContext("/cost_model",     this::handleCostModel);
+        route("/set_velocity", this::setVelocity);
+
+        server.setExecutor(createExecutor(System.getProperty("azathoth.http.executor", "virtual")));
         server.start();
         System.out.println("Simple HTTP Server läuft auf Port 8080");
     }
 
-    private void handleSetVelocity(HttpExchange ex) throws IOException {
-        MinecraftClient mc = MinecraftClient.getInstance();
-        ClientPlayerEntity player = mc.player;
-        Map<String,String> params = parseQuery(ex.getRequestURI());
+    /**
+     * Executor für die Handler, über -Dazathoth.http.executor wählbar:
+     * virtual (Standard, ein virtueller Thread pro Anfrage), fixed:&lt;n&gt; (fester Pool)
+     * oder single (alles auf dem Dispatcher-Thread, wie früher).
+     * Handler lesen und ändern Spielzustand nur über {@link #onClient} bzw. mc.execute
+     * oder arbeiten auf einem {@link SectionSnapshot}.
+     */
+    static Executor createExecutor(String spec) {
+        if (spec.equals("single")) return null;
+        if (spec.startsWith("fixed:")) {
+            int n = Integer.parseInt(spec.substring("fixed:".length()));
+            return Executors.newFixedThreadPool(n, Thread.ofPlatform().name("azathoth-http-", 0).daemon().factory());
+        }
+        if (!spec.equals("virtual")) throw new IllegalArgumentException("Unbekannter Executor: " + spec);
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("azathoth-http-", 0).factory());
+    }
+
+    /** Führt f auf dem Client-Thread aus und wartet auf das Ergebnis. */
+    private static <T> T onClient(Supplier<T> f) {
+        var mc = MinecraftClient.getInstance();
+        return mc.isOnThread() ? f.get() : mc.submit(f).join();
+    }
+
+    /**
+     * Endpunkt, der komplett auf dem Client-Thread läuft und ein JSON-fähiges Ergebnis liefert.
+     * Fehler werden als {@link RouteError} geworfen. Alle Routen sind auch über /batch erreichbar.
+     */
+    @FunctionalInterface
+    private interface Route {
+        Object handle(Map<String, String> params);
+    }
+
+    /** Endpunkt, der nur aus einem {@link GameState} liest, siehe {@link #stateRoute}. */
+    @FunctionalInterface
+    private interface StateRoute {
+        Object handle(GameState st, Map<String, String> params);
+    }
+
+    private static final class RouteError extends RuntimeException {
+        final int code;
+
+        RouteError(int code, String msg) {
+            super(msg);
+            this.code = code;
+        }
+    }
+
+    /** Ergebnis eines Routen-Aufrufs; bei Fehlern ist result null und error gesetzt. */
+    private record Outcome(int status, Object result, String error) {}
+
+    private void route(String path, Route r) {
+        routes.put(path, r);
+        server.createContext(path, ex -> {
+            Map<String, String> p = parseQuery(ex.getRequestURI());
+            Outcome o = onClient(() -> call(r, p));
+            if (o.error() != null) sendError(ex, o.status(), o.error());
+            else sendJson(ex, o.result());
+        });
+    }
 
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
+    /**
+     * Wie {@link #route}, aber für Endpunkte, die nur den veröffentlichten {@link GameState} lesen:
+     * sie laufen direkt auf dem HTTP-Thread, ohne auf den Client-Thread zu warten. Die Route
+     * bekommt genau den Zustand, dessen Tick auch im Cache-Schlüssel und im ETag steht.
+     */
+    private void stateRoute(String path, StateRoute r) {
+        Route live = p -> r.handle(currentState(), p);
+        routes.put(path, live);
+        server.createContext(path, ex -> {
+            Map<String, String> p = parseQuery(ex.getRequestURI());
+            GameState st = state;
+            if (st == null) {
+                Outcome o = call(live, p);
+                if (o.error() != null) sendError(ex, o.status(), o.error());
+                else sendJson(ex, o.result());
+                return;
+            }
+            String key = path + new TreeMap<>(p);
+            CachedResponse c = responseCache.get(key);
+            if (c == null || c.tick() != st.tick()) {
+                Outcome o = call(params -> r.handle(st, params), p);
+                if (o.error() != null) {
+                    sendError(ex, o.status(), o.error());
+                    return;
+                }
+                if (c != null && Objects.equals(c.result(), o.result())) {
+                    // unverändert: Bytes und ETag behalten, damit If-None-Match weiter greift
+                    c = new CachedResponse(st.tick(), c.result(), c.etag(), c.body());
+                } else {
+                    c = new CachedResponse(st.tick(), o.result(), "\"" + ETAG_PREFIX + st.tick() + "\"", toJsonBytes(o.result()));
+                }
+                if (responseCache.size() >= MAX_CACHED_RESPONSES) responseCache.clear();
+                responseCache.put(key, c);
+            }
+            ex.getResponseHeaders().set("ETag", c.etag());
+            ex.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (etagMatches(ex.getRequestHeaders().getFirst("If-None-Match"), c.etag())) {
+                ex.sendResponseHeaders(304, -1);
+                ex.close();
+                return;
+            }
+            sendBytes(ex, "application/json", c.body());
+        });
+    }
+
+    /**
+     * Serialisierte Antwort eines {@link #stateRoute}-Endpunkts für einen Tick und Parametersatz.
+     * etag ist die Tick-Nummer, in der sich der Inhalt zuletzt geändert hat, mit {@link #ETAG_PREFIX}.
+     */
+    private record CachedResponse(long tick, Object result, String etag, byte[] body) {}
+
+    /**
+     * Zufällig pro Prozess: die Tick-Nummer fängt nach jedem Neustart bei 0 an, ein ETag aus einem
+     * früheren Lauf darf dann nicht auf eine neue Antwort passen.
+     */
+    private static final String ETAG_PREFIX = Long.toHexString(new Random().nextLong()) + "-";
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /** Zustand des letzten Ticks; Aktionen werden erst nach dem nächsten Tick sichtbar. */
+    private GameState currentState() {
+        GameState st = state;
+        if (st == null) throw new RouteError(500, "Spieler nicht verfügbar");
+        return st;
+    }
+
+    /** Muss auf dem Client-Thread laufen. */
+    private static Outcome call(Route r, Map<String, String> params) {
+        try {
+            return new Outcome(200, r.handle(params), null);
+        } catch (RouteError e) {
+            return new Outcome(e.code, null, e.getMessage());
+        } catch (RuntimeException e) {
+            return new Outcome(500, null, "Fehler: " + e.getMessage());
+        }
+    }
+
+    // ====== Mehrere Routen in einem Aufruf: POST /batch mit ["/position", "/block_status?x=1&y=2&z=3", ...] ======
+    /**
+     * Jeder Eintrag ist entweder ein Pfad mit Query wie bei einem Einzelaufruf oder ein Objekt
+     * {"path": "/block_status", "params": {"x": 1, "y": 2, "z": 3}}. Alle Aufrufe laufen der Reihe
+     * nach in einer einzigen Aufgabe auf dem Client-Thread, sehen also denselben Tick. Routen, die
+     * die Welt direkt lesen (z.B. /block_status), sehen Aktionen früherer Einträge; /state,
+     * /position, /inventory und /looking_block liefern dagegen den Zustand vom Ende des letzten
+     * Ticks, Aktionen desselben Batches zeigen sie erst nach dem nächsten Tick. Antwort: pro Eintrag {status, result}
+     * oder {status, error}, in derselben Reihenfolge. Nur POST, sonst 405.
+     */
+    private void handleBatch(HttpExchange ex) throws IOException {
+        if (!"POST".equals(ex.getRequestMethod())) {
+            ex.getResponseHeaders().set("Allow", "POST");
+            sendError(ex, 405, "Nur POST erlaubt");
+            return;
+        }
+        List<Route> calls = new ArrayList<>();
+        List<Map<String, String>> params = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        try {
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            JsonArray arr = JsonParser.parseString(body).getAsJsonArray();
+            if (arr.size() > MAX_BATCH) {
+                sendError(ex, 400, "Zu viele Aufrufe im Batch (max. " + MAX_BATCH + ")");
+                return;
+            }
+            for (JsonElement el : arr) {
+                String path;
+                Map<String, String> p;
+                if (el.isJsonObject()) {
+                    JsonObject o = el.getAsJsonObject();
+                    path = o.get("path").getAsString();
+                    p = new HashMap<>();
+                    if (o.has("params")) {
+                        for (Map.Entry<String, JsonElement> e : o.getAsJsonObject("params").entrySet()) {
+                            p.put(e.getKey(), e.getValue().getAsString());
+                        }
+                    }
+                } else {
+                    URI uri = URI.create(el.getAsString());
+                    path = uri.getPath();
+                    p = parseQuery(uri);
+                }
+                paths.add(path);
+                calls.add(routes.get(path));
+                params.add(p);
+            }
+        } catch (Exception e) {
+            sendError(ex, 400, "Ungültiger Batch: " + e.getMessage());
             return;
         }
 
+        List<Outcome> results = onClient(() -> {
+            List<Outcome> out = new ArrayList<>(calls.size());
+            for (int i = 0; i < calls.size(); i++) {
+                Route r = calls.get(i);
+                out.add(r == null
+                        ? new Outcome(404, null, "Im Batch nicht verfügbar: " + paths.get(i))
+                        : call(r, params.get(i)));
+            }
+            return out;
+        });
+        sendJson(ex, results);
+    }
+
+    // ====== Long-Poll: /wait/block?x=..&y=..&z=..&is=<id> bzw. not=<id>, /wait/position?x=..&y=..&z=.., /wait/item?item=<id>&count=<n> ======
+    /**
+     * Parkt die Anfrage, bis die Bedingung gilt oder timeout_ms (Standard 5000, max. 60000) um ist;
+     * geprüft wird am Ende jedes Client-Ticks. Antwort: {ok, state, waitedMs}, state ist dasselbe
+     * JSON wie bei /block_status bzw. /position bzw. {item, count}.
+     */
+    private void handleWait(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI().getPath().substring("/wait".length());
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        long timeout = Math.min(MAX_WAIT_MS, Math.max(0, parseLong(p.get("timeout_ms"), 5000)));
+        Supplier<Object> observe;
+        Predicate<Object> done;
+        switch (action) {
+            case "/block", "/position" -> {
+                int x, y, z;
+                try {
+                    x = Integer.parseInt(p.get("x"));
+                    y = Integer.parseInt(p.get("y"));
+                    z = Integer.parseInt(p.get("z"));
+                } catch (NumberFormatException e) {
+                    sendError(ex, 400, "Ungültige Koordinaten");
+                    return;
+                }
+                if (action.equals("/block")) {
+                    String is = p.get("is"), not = p.get("not");
+                    if (is == null && not == null) {
+                        sendError(ex, 400, "Parameter 'is' oder 'not' fehlt");
+                        return;
+                    }
+                    observe = () -> blockStatus(p);
+                    done = v -> {
+                        Object id = ((Map<?, ?>) v).get("block");
+                        return (is == null || is.equals(id)) && (not == null || !not.equals(id));
+                    };
+                } else {
+                    // Spieler steht im Block (x, y, z)
+                    observe = () -> currentState().position();
+                    done = v -> {
+                        GameState.Position pos = (GameState.Position) v;
+                        return Math.floor(pos.x()) == x && Math.floor(pos.y()) == y && Math.floor(pos.z()) == z;
+                    };
+                }
+            }
+            case "/item" -> {
+                String item = p.get("item");
+                if (item == null) {
+                    sendError(ex, 400, "Parameter 'item' fehlt");
+                    return;
+                }
+                int count = parseInt(p.get("count"), 1);
+                observe = () -> Map.of("item", item, "count", itemCount(item));
+                done = v -> (Integer) ((Map<?, ?>) v).get("count") >= count;
+            }
+            default -> {
+                sendError(ex, 404, "Unbekannte Bedingung: " + action);
+                return;
+            }
+        }
+        TickWaiters.Result result;
         try {
-            double vx = Double.parseDouble(params.getOrDefault("x", "0"));
-            double vy = Double.parseDouble(params.getOrDefault("y", "0"));
-            double vz = Double.parseDouble(params.getOrDefault("z", "0"));
+            result = waiters.await(observe, done, timeout);
+        } catch (RouteError e) {
+            sendError(ex, e.code, e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            sendError(ex, 503, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            sendError(ex, 500, "Unterbrochen");
+            return;
+        } catch (RuntimeException e) {
+            sendError(ex, 500, "Fehler: " + e.getMessage());
+            return;
+        }
+        sendJson(ex, result);
+    }
 
-            // Auf dem Client-Thread ausführen
-            mc.execute(() -> {
-                player.setVelocity(vx, vy, vz);
-                // Stelle sicher, dass die Velocity übernommen wird
-                player.velocityModified = true;
-            });
+    /** Anzahl des Items im Hauptinventar; muss auf dem Client-Thread laufen. */
+    private static int itemCount(String item) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (player == null) throw new RouteError(500, "Spieler nicht verfügbar");
+        int n = 0;
+        for (ItemStack stack : player.getInventory().main) {
+            if (!stack.isEmpty() && Registries.ITEM.getId(stack.getItem()).toString().equals(item)) n += stack.getCount();
+        }
+        return n;
+    }
+
+    /** Kostengitter über eine auf dem Client-Thread kopierte Raute um start. */
+    private static CostGrid snapshotGrid(World world, BlockPos start, int radius) {
+        return new CostGrid(onClient(() -> SectionSnapshot.capture(world, start, radius)));
+    }
 
-            // Einfach eine Rückmeldung als JSON
-            Map<String, Object> result = Map.of(
-                    "velocity_x", vx,
-                    "velocity_y", vy,
-                    "velocity_z", vz
-            );
-            sendJson(ex, result);
+    /**
+     * Sampler für Suchen, deren Sections vorher nicht feststehen: kopiert fehlende Sections
+     * samt Nachbarn auf dem Client-Thread, abgetastet wird im aufrufenden Thread.
+     */
+    private static CostGrid.Sampler sectionSampler(World world) {
+        return new SnapshotSampler(keys -> onClient(() -> SectionSnapshot.captureSections(world, keys)));
+    }
 
+    private Object setVelocity(Map<String,String> params) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (player == null) throw new RouteError(500, "Spieler nicht verfügbar");
+
+        double vx, vy, vz;
+        try {
+            vx = Double.parseDouble(params.getOrDefault("x", "0"));
+            vy = Double.parseDouble(params.getOrDefault("y", "0"));
+            vz = Double.parseDouble(params.getOrDefault("z", "0"));
         } catch (NumberFormatException nfe) {
-            sendError(ex, 400, "Ungültige Zahl: " + nfe.getMessage());
-        } catch (Exception e) {
-            sendError(ex, 500, "Fehler beim Setzen der Velocity: " + e.getMessage());
+            throw new RouteError(400, "Ungültige Zahl: " + nfe.getMessage());
         }
+
+        player.setVelocity(vx, vy, vz);
+        // Stelle sicher, dass die Velocity übernommen wird
+        player.velocityModified = true;
+
+        // Einfach eine Rückmeldung als JSON
+        return Map.of(
+                "velocity_x", vx,
+                "velocity_y", vy,
+                "velocity_z", vz
+        );
     }
 
 
@@ -120,12 +544,12 @@ public class SimpleHttpServer {
             int gx = Integer.parseInt(p.get("gx"));
             int gy = Integer.parseInt(p.get("gy"));
             int gz = Integer.parseInt(p.get("gz"));
-            int maxRadius = Integer.parseInt(p.getOrDefault("r", "64"));
+            int maxRadius = pathRadius(p, 64);
 
             BlockPos start = new BlockPos(sx, sy, sz);
             BlockPos goal  = new BlockPos(gx, gy, gz);
 
-            qwermotion.azathoth.Pathfinder.Path path = qwermotion.azathoth.Pathfinder.findPath(world, start, goal, maxRadius);
+            qwermotion.azathoth.Pathfinder.Path path = cachedPath(world, start, goal, maxRadius);
             if (path == null) {
                 sendError(ex, 404, "Kein Pfad gefunden");
                 return;
@@ -171,144 +595,612 @@ public class SimpleHttpServer {
             int gx = Integer.parseInt(p.get("gx"));
             int gy = Integer.parseInt(p.get("gy"));
             int gz = Integer.parseInt(p.get("gz"));
-            int maxRadius = Integer.parseInt(p.getOrDefault("r", "64"));
+            int maxRadius = pathRadius(p, 64);
 
             BlockPos start = new BlockPos(sx, sy, sz);
             BlockPos goal  = new BlockPos(gx, gy, gz);
 
-            qwermotion.azathoth.Pathfinder.Path result = qwermotion.azathoth.Pathfinder.findPath(world, start, goal, maxRadius);
+            // Anytime-Modus: mit eps (Startgewicht) und/oder budget_ms immer eine Antwort innerhalb des Budgets,
+            // notfalls der Teilpfad zur größten Annäherung (stats.complete = false)
+            if (p.containsKey("eps") || p.containsKey("budget_ms")) {
+                double eps = parseDouble(p.get("eps"), 3.0);
+                long budget = Math.max(1, parseLong(p.get("budget_ms"), 50));
+                CostGrid grid = snapshotGrid(world, start, maxRadius);
+                sendPath(ex, () -> grid, qwermotion.azathoth.Pathfinder.findPathAnytime(grid, start, goal, maxRadius,
+                        eps, SearchControl.withBudget(budget)), p.get("format"));
+                return;
+            }
+            qwermotion.azathoth.Pathfinder.Path result = cachedPath(world, start, goal, maxRadius);
             if (result == null) {
                 sendError(ex, 404, "Kein Pfad gefunden");
             } else {
-                sendJson(ex, result);
+                sendPath(ex, () -> snapshotGrid(world, start, maxRadius), result, p.get("format"));
             }
         } catch (Exception e) {
             sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
         }
     }
-    private void handleBlockStatus(HttpExchange ex) throws IOException {
-        var mc = MinecraftClient.getInstance();
-        var world = mc.world;
-        Map<String,String> params = parseQuery(ex.getRequestURI());
 
-        // Parameter prüfen
+    /**
+     * format=compact: Segmente (Endpunkt, Schrittzahl, Aktion) statt jeder einzelnen Position,
+     * format=packed: int-Array aus {@link PathCodec#pack} als JSON, format=binary: dasselbe als
+     * Big-Endian-Bytes. Ohne format wie bisher der komplette Path. Das Gitter für die Aktionen
+     * wird nur für die kompakten Formate geholt.
+     */
+    private void sendPath(HttpExchange ex, Supplier<CostGrid> gridSource, qwermotion.azathoth.Pathfinder.Path path, String format) throws IOException {
+        if (format == null || format.equals("full")) {
+            sendJson(ex, path);
+            return;
+        }
+        CostGrid grid = gridSource.get();
+        JsonBody fields;
+        switch (format) {
+            case "compact" -> {
+                var segments = PathCodec.compress(path, grid);
+                fields = w -> {
+                    w.name("start");
+                    writeValue(w, path.positions().get(0));
+                    w.name("segments");
+                    writeValue(w, segments);
+                };
+            }
+            case "packed" -> {
+                int[] packed = PathCodec.pack(path, grid);
+                fields = w -> {
+                    w.name("packed").beginArray();
+                    for (int v : packed) w.value(v);
+                    w.endArray();
+                };
+            }
+            case "binary" -> {
+                int[] packed = PathCodec.pack(path, grid);
+                ByteBuffer buf = ByteBuffer.allocate(packed.length * 4);
+                buf.asIntBuffer().put(packed);
+                sendBytes(ex, "application/octet-stream", buf.array());
+                return;
+            }
+            default -> {
+                sendError(ex, 400, "Unbekanntes Format: " + format);
+                return;
+            }
+        }
+        writeJson(ex, w -> {
+            w.beginObject();
+            fields.write(w);
+            w.name("buildCost").value(path.buildCost());
+            w.name("timeCost").value(path.timeCost());
+            w.name("totalCost").value(path.totalCost());
+            if (path.stats() != null) {
+                w.name("stats");
+                writeValue(w, path.stats());
+            }
+            w.endObject();
+        });
+    }
+    // ====== Eine Suche zu mehreren Zielen: goals=x,y,z;x,y,z;... oder block=<id>&br=<Suchradius>&n=<max. Kandidaten> ======
+    private void handleFindPathNearest(HttpExchange ex) throws IOException {
+        World world = MinecraftClient.getInstance().world;
         if (world == null) {
             sendError(ex, 500, "Welt nicht verfügbar");
             return;
         }
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        BlockPos start;
+        int maxRadius;
+        List<BlockPos> goals = new ArrayList<>();
         try {
-            int x = Integer.parseInt(params.get("x"));
-            int y = Integer.parseInt(params.get("y"));
-            int z = Integer.parseInt(params.get("z"));
+            start = new BlockPos(Integer.parseInt(p.get("sx")), Integer.parseInt(p.get("sy")), Integer.parseInt(p.get("sz")));
+            maxRadius = pathRadius(p, 64);
+            if (p.containsKey("goals")) {
+                for (String g : p.get("goals").split(";")) {
+                    String[] c = g.split(",");
+                    goals.add(new BlockPos(Integer.parseInt(c[0].trim()), Integer.parseInt(c[1].trim()), Integer.parseInt(c[2].trim())));
+                }
+            } else if (p.containsKey("block")) {
+                Identifier id = Identifier.tryParse(p.get("block"));
+                if (id == null || !Registries.BLOCK.containsId(id)) {
+                    sendError(ex, 400, "Block nicht gefunden");
+                    return;
+                }
+                Block target = Registries.BLOCK.get(id);
+                int br = Math.max(1, Math.min(parseInt(p.get("br"), 32), MAX_BLOCK_RADIUS));
+                int n = parseInt(p.get("n"), 64);
+                for (BlockSearch.Hit hit : nearestBlocks(world, start, br, target, n)) goals.add(hit.pos());
+            } else {
+                sendError(ex, 400, "Parameter 'goals' oder 'block' fehlt");
+                return;
+            }
+        } catch (Exception e) {
+            sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
+            return;
+        }
+        if (goals.isEmpty()) {
+            sendError(ex, 404, "Keine Ziele gefunden");
+            return;
+        }
+        qwermotion.azathoth.Pathfinder.Path path = qwermotion.azathoth.Pathfinder.findNearest(snapshotGrid(world, start, maxRadius), start, goals, maxRadius, null);
+        if (path == null) {
+            sendError(ex, 404, "Kein Ziel erreichbar");
+            return;
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("goal", path.positions().get(path.positions().size() - 1));
+        out.put("candidates", goals.size());
+        out.put("positions", path.positions());
+        out.put("buildCost", path.buildCost());
+        out.put("timeCost", path.timeCost());
+        out.put("totalCost", path.totalCost());
+        sendJson(ex, out);
+    }
 
-            BlockPos pos = new BlockPos(x, y, z);
-            BlockState state = world.getBlockState(pos);
-            String blockId = Registries.BLOCK.getId(state.getBlock()).toString();
+    // ====== /http_metrics: Antworten und Bytes vor/nach Kompression pro Endpunkt, /http_metrics/reset ======
+    private void handleHttpMetrics(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI().getPath().substring("/http_metrics".length());
+        switch (action) {
+            case "", "/" -> { }
+            case "/reset" -> httpMetrics.reset();
+            default -> {
+                sendError(ex, 404, "Unbekannte Aktion: " + action);
+                return;
+            }
+        }
+        Map<String, Object> out = new LinkedHashMap<>(httpMetrics.snapshot());
+        out.put("compress_min", compressMin);
+        sendJson(ex, out);
+    }
 
-            // Optional kannst du auch "air" abdecken:
-            if (state.isAir()) {
-                blockId = "minecraft:air";
+    // ====== Block-Index: /block_index (Statistik), /block_index/watch?blocks=<id>,<id>,
+    //        /block_index/within?block=<id>&r=<Radius>[&x=&y=&z=] (alle Treffer, nach Abstand sortiert) ======
+    private void handleBlockIndex(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI().getPath().substring("/block_index".length());
+        Map<String, String> p = parseQuery(ex.getRequestURI());
+        switch (action) {
+            case "", "/" -> { }
+            case "/watch" -> {
+                List<Block> blocks;
+                try {
+                    blocks = parseBlocks(p.getOrDefault("blocks", ""));
+                } catch (IllegalArgumentException e) {
+                    sendError(ex, 400, e.getMessage());
+                    return;
+                }
+                onClient(() -> {
+                    blockIndexer.watch(blocks);
+                    return null;
+                });
             }
+            case "/within" -> {
+                handleBlockIndexWithin(ex, p);
+                return;
+            }
+            default -> {
+                sendError(ex, 404, "Unbekannte Aktion: " + action);
+                return;
+            }
+        }
+        BlockIndex index = blockIndexer.index();
+        Map<String, Object> blocks = new LinkedHashMap<>();
+        for (Block b : index.watched()) blocks.put(Registries.BLOCK.getId(b).toString(), index.count(b));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("blocks", blocks);
+        out.put("chunks", blockIndexer.chunkCount());
+        out.put("sections", index.sectionCount());
+        out.put("pending", blockIndexer.pending());
+        sendJson(ex, out);
+    }
 
-            // Antwort senden
-            sendJson(ex, Map.of(
-                    "x", x, "y", y, "z", z,
-                    "block", blockId
-            ));
+    private void handleBlockIndexWithin(HttpExchange ex, Map<String, String> p) throws IOException {
+        World world = MinecraftClient.getInstance().world;
+        var player = MinecraftClient.getInstance().player;
+        if (world == null || player == null) {
+            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
+            return;
+        }
+        Identifier id = Identifier.tryParse(p.getOrDefault("block", ""));
+        if (id == null || !Registries.BLOCK.containsId(id)) {
+            sendError(ex, 400, "Block nicht gefunden");
+            return;
+        }
+        Block target = Registries.BLOCK.get(id);
+        if (!blockIndexer.covers(world, target)) {
+            sendError(ex, 400, "Block wird nicht indiziert: " + id);
+            return;
+        }
+        BlockPos origin;
+        try {
+            origin = p.containsKey("x")
+                    ? new BlockPos(Integer.parseInt(p.get("x")), Integer.parseInt(p.get("y")), Integer.parseInt(p.get("z")))
+                    : onClient(player::getBlockPos);
         } catch (NumberFormatException e) {
             sendError(ex, 400, "Ungültige Koordinaten");
+            return;
+        }
+        int r = Math.max(1, Math.min(parseInt(p.get("r"), 32), MAX_BLOCK_RADIUS));
+        if (!blockIndexer.flush(INDEX_FLUSH_MS)) {
+            sendError(ex, 503, "Block-Index wird noch aufgebaut");
+            return;
         }
+        sendHits(ex, blockIndexer.index().within(target, origin, r));
     }
 
-    private void handlePlaceBlock(HttpExchange ex) throws IOException {
+    /** {"positions":[{x,y,z,distance}, ...]} */
+    private void sendHits(HttpExchange ex, List<BlockSearch.Hit> hits) throws IOException {
+        writeJson(ex, w -> {
+            w.beginObject();
+            w.name("positions").beginArray();
+            for (BlockSearch.Hit hit : hits) {
+                BlockPos pos = hit.pos();
+                w.beginObject();
+                w.name("x").value(pos.getX());
+                w.name("y").value(pos.getY());
+                w.name("z").value(pos.getZ());
+                w.name("distance").value(Math.sqrt(hit.dist2()));
+                w.endObject();
+            }
+            w.endArray();
+            w.endObject();
+        });
+    }
+
+    /** Kommaliste von Block-IDs; unbekannte IDs sind ein Fehler. */
+    private static List<Block> parseBlocks(String spec) {
+        List<Block> blocks = new ArrayList<>();
+        for (String s : spec.split(",")) {
+            if (s.isBlank()) continue;
+            Identifier id = Identifier.tryParse(s.trim());
+            if (id == null || !Registries.BLOCK.containsId(id)) throw new IllegalArgumentException("Block nicht gefunden: " + s.trim());
+            blocks.add(Registries.BLOCK.get(id));
+        }
+        return blocks;
+    }
+
+    /**
+     * Synchrone Suche über den Pfad-Cache; nur gefundene Pfade werden abgelegt, und nur, wenn sich
+     * keine abgetastete Section seit der Kopie geändert hat.
+     */
+    private qwermotion.azathoth.Pathfinder.Path cachedPath(World world, BlockPos start, BlockPos goal, int maxRadius) {
+        pathCacheFor(world);
+        PathCache.Key key = PathCache.Key.of(start.getX(), start.getY(), start.getZ(),
+                goal.getX(), goal.getY(), goal.getZ(), maxRadius);
+        qwermotion.azathoth.Pathfinder.Path path = pathCache.get(key);
+        if (path != null) return path;
+        SectionVersions versions = sectionVersionsFor(world);
+        long[] version = new long[1];
+        CostGrid grid = new CostGrid(onClient(() -> {
+            version[0] = versions.current();
+            return SectionSnapshot.capture(world, start, maxRadius);
+        }));
+        path = qwermotion.azathoth.Pathfinder.findPath(grid, start, goal, maxRadius, null);
+        if (path != null) pathCache.putIfUnchanged(key, path, grid.sampledSectionKeys(), versions, version[0]);
+        return path;
+    }
+
+    /** Die Cache-Einträge gelten nur für eine Welt; bei Welt- oder Dimensionswechsel leeren. */
+    private synchronized void pathCacheFor(World world) {
+        if (pathCacheWorld == world) return;
+        pathCache.clear();
+        pathCacheWorld = world;
+    }
+
+    // ====== Pfad-Cache: /path_cache (Statistik), /path_cache/clear ======
+    private void handlePathCache(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI().getPath().substring("/path_cache".length());
+        switch (action) {
+            case "", "/" -> { }
+            case "/clear" -> pathCache.clear();
+            default -> {
+                sendError(ex, 404, "Unbekannte Aktion: " + action);
+                return;
+            }
+        }
+        PathCache.Stats st = pathCache.stats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", st.size());
+        out.put("capacity", st.capacity());
+        out.put("hits", st.hits());
+        out.put("misses", st.misses());
+        out.put("hit_rate", st.hitRate());
+        out.put("invalidated", st.invalidated());
+        out.put("evicted", st.evicted());
+        sendJson(ex, out);
+    }
+
+    // ====== Kostenmodell: /cost_model zeigt die Aufschläge, /cost_model?air_build=..&falling=..&lava=.. setzt sie ======
+    private void handleCostModel(HttpExchange ex) throws IOException {
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        BlockCostTable.Config c = BlockCostTable.config();
+        if (p.containsKey("air_build") || p.containsKey("falling") || p.containsKey("lava")) {
+            try {
+                c = new BlockCostTable.Config(
+                        Integer.parseInt(p.getOrDefault("air_build", String.valueOf(c.airBuild()))),
+                        Integer.parseInt(p.getOrDefault("falling", String.valueOf(c.fallingAbove()))),
+                        Integer.parseInt(p.getOrDefault("lava", String.valueOf(c.lavaAdjacent()))));
+            } catch (Exception e) {
+                sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
+                return;
+            }
+            BlockCostTable.configure(c);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("air_build", c.airBuild());
+        out.put("falling", c.fallingAbove());
+        out.put("lava", c.lavaAdjacent());
+        out.put("version", BlockCostTable.version());
+        out.put("states", BlockCostTable.current().size());
+        sendJson(ex, out);
+    }
+
+    // ====== Hierarchische Pfadsuche für weite Strecken ======
+    private void handleFindPathLong(HttpExchange ex) throws IOException {
+        World world = MinecraftClient.getInstance().world;
+        if (world == null) {
+            sendError(ex, 500, "Welt nicht verfügbar");
+            return;
+        }
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        try {
+            BlockPos start = new BlockPos(Integer.parseInt(p.get("sx")), Integer.parseInt(p.get("sy")), Integer.parseInt(p.get("sz")));
+            BlockPos goal  = new BlockPos(Integer.parseInt(p.get("gx")), Integer.parseInt(p.get("gy")), Integer.parseInt(p.get("gz")));
+            int maxRadius = Integer.parseInt(p.getOrDefault("r", "1024"));
+            int refine = Integer.parseInt(p.getOrDefault("refine", "-1"));
+
+            HierarchicalPathfinder hpa = hierarchicalFor(world);
+            HierarchicalPathfinder.Result result = hpa.findPath(start, goal, maxRadius, refine);
+            if (result == null) {
+                sendError(ex, 404, "Kein Pfad gefunden");
+                return;
+            }
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("positions", result.path().positions());
+            out.put("buildCost", result.path().buildCost());
+            out.put("timeCost", result.path().timeCost());
+            out.put("totalCost", result.path().totalCost());
+            out.put("waypoints", result.waypoints());
+            out.put("abstract_nodes", result.abstractNodes());
+            out.put("abstract_expanded", result.abstractExpanded());
+            out.put("cached_clusters", hpa.cachedClusters());
+            sendJson(ex, out);
+        } catch (Exception e) {
+            sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
+        }
+    }
+
+    /** Der Portal-Cache gehört zu einer Welt und einem Kostenmodell; nach Wechsel neu anlegen. */
+    private synchronized HierarchicalPathfinder hierarchicalFor(World world) {
+        if (hierarchical == null || hierarchicalWorld != world || hierarchicalVersion != BlockCostTable.version()) {
+            HierarchicalPathfinder hpa = new HierarchicalPathfinder(() -> sectionSampler(world));
+            if (hierarchicalListener != null) WorldChangeTracker.removeListener(hierarchicalListener);
+            hierarchicalListener = new WorldChangeTracker.Listener() {
+                @Override
+                public void onBlockChanged(World w, BlockPos pos, BlockState state) {
+                    if (w == world) hpa.onSectionChanged(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+                }
+
+                @Override
+                public void onChunkChanged(World w, int cx, int cz, boolean loaded) {
+                    if (w == world) hpa.onChunkChanged(cx, cz, w.getBottomSectionCoord(), w.getTopSectionCoord() - 1);
+                }
+            };
+            WorldChangeTracker.addListener(hierarchicalListener);
+            hierarchical = hpa;
+            hierarchicalWorld = world;
+            hierarchicalVersion = BlockCostTable.version();
+        }
+        return hierarchical;
+    }
+
+    // ====== Asynchrone Pfadsuche: /path_jobs/submit, /path_jobs/poll, /path_jobs/cancel ======
+    private void handlePathJobs(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI().getPath().substring("/path_jobs".length());
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        switch (action) {
+            case "", "/", "/submit" -> submitPathJob(ex, p);
+            case "/poll" -> {
+                PathJobs.Job job = pathJobs.get(parseLong(p.get("id"), -1));
+                if (job == null) sendError(ex, 404, "Job nicht gefunden");
+                else sendJson(ex, pathJobJson(job));
+            }
+            case "/cancel" -> {
+                PathJobs.Job job = pathJobs.cancel(parseLong(p.get("id"), -1));
+                if (job == null) sendError(ex, 404, "Job nicht gefunden");
+                else sendJson(ex, pathJobJson(job));
+            }
+            default -> sendError(ex, 404, "Unbekannte Aktion: " + action);
+        }
+    }
+
+    private void submitPathJob(HttpExchange ex, Map<String,String> p) throws IOException {
         var mc = MinecraftClient.getInstance();
-        ClientPlayerEntity player = mc.player;
-        var world = mc.world;
-        if (player == null || world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
+        World world = mc.world;
+        if (world == null) {
+            sendError(ex, 500, "Welt nicht verfügbar");
             return;
         }
+        BlockPos start, goal;
+        int maxRadius;
+        try {
+            start = new BlockPos(Integer.parseInt(p.get("sx")), Integer.parseInt(p.get("sy")), Integer.parseInt(p.get("sz")));
+            goal  = new BlockPos(Integer.parseInt(p.get("gx")), Integer.parseInt(p.get("gy")), Integer.parseInt(p.get("gz")));
+            maxRadius = pathRadius(p, 64);
+        } catch (Exception e) {
+            sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
+            return;
+        }
+        long budget = parseLong(p.get("budget_ms"), PathJobs.DEFAULT_BUDGET_MS);
 
-        Map<String,String> params = parseQuery(ex.getRequestURI());
+        // Blöcke auf dem Client-Thread kopieren, gesucht wird danach im Worker-Pool
+        SectionSnapshot snapshot = onClient(() -> SectionSnapshot.capture(world, start, maxRadius));
         try {
-            int x = Integer.parseInt(params.get("x"));
-            int y = Integer.parseInt(params.get("y"));
-            int z = Integer.parseInt(params.get("z"));
-            String blockId = params.get("block");
-            if (blockId == null) throw new IllegalArgumentException("block fehlt");
+            double eps = parseDouble(p.get("eps"), 0);
+            sendJson(ex, pathJobJson(pathJobs.submit(start, goal, maxRadius, eps, budget, snapshot)));
+        } catch (RejectedExecutionException e) {
+            sendError(ex, 503, "Zu viele Pfad-Jobs in der Warteschlange");
+        }
+    }
 
-            Identifier id = Identifier.tryParse(blockId);
-            if (id == null) throw new IllegalArgumentException("Ungültige Block-ID");
+    // ====== Inkrementelle Pfadsuche pro Bot: /path_session?bot=..&changed=x,y,z;x,y,z ======
+    private void handlePathSession(HttpExchange ex) throws IOException {
+        var mc = MinecraftClient.getInstance();
+        World world = mc.world;
+        if (world == null) {
+            sendError(ex, 500, "Welt nicht verfügbar");
+            return;
+        }
+        Map<String,String> p = parseQuery(ex.getRequestURI());
+        String bot = p.getOrDefault("bot", "default");
+        if (ex.getRequestURI().getPath().endsWith("/drop")) {
+            sendJson(ex, Map.of("bot", bot, "dropped", pathSessions.drop(bot)));
+            return;
+        }
+        try {
+            BlockPos start = new BlockPos(Integer.parseInt(p.get("sx")), Integer.parseInt(p.get("sy")), Integer.parseInt(p.get("sz")));
+            BlockPos goal  = new BlockPos(Integer.parseInt(p.get("gx")), Integer.parseInt(p.get("gy")), Integer.parseInt(p.get("gz")));
+            int maxRadius = Integer.parseInt(p.getOrDefault("r", "64"));
 
-            // Finde passenden BlockItem im Hotbar-Inventar
-            int slot = -1;
-            for (int i = 0; i < 9; i++) {
-                ItemStack s = player.getInventory().getStack(i);
-                if (!s.isEmpty() && s.getItem() instanceof BlockItem bi &&
-                        Registries.BLOCK.getId(bi.getBlock()).toString().equals(blockId)) {
-                    slot = i; break;
+            List<BlockPos> changed = new ArrayList<>();
+            String changedParam = p.get("changed");
+            if (changedParam != null && !changedParam.isEmpty()) {
+                for (String triple : changedParam.split(";")) {
+                    String[] c = triple.split(",");
+                    changed.add(new BlockPos(Integer.parseInt(c[0].trim()), Integer.parseInt(c[1].trim()), Integer.parseInt(c[2].trim())));
                 }
             }
-            if (slot < 0) {
-                sendError(ex, 400, "BlockItem nicht im Hotbar gefunden");
+
+            PathSessions.Plan plan = pathSessions.plan(bot, sectionSampler(world), sectionVersionsFor(world), start, goal, maxRadius, changed);
+            if (plan.path() == null) {
+                sendError(ex, 404, "Kein Pfad gefunden");
                 return;
             }
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("positions", plan.path().positions());
+            out.put("buildCost", plan.path().buildCost());
+            out.put("timeCost", plan.path().timeCost());
+            out.put("totalCost", plan.path().totalCost());
+            out.put("repaired", plan.repaired());
+            out.put("expanded", plan.expanded());
+            sendJson(ex, out);
+        } catch (Exception e) {
+            sendError(ex, 400, "Ungültige Parameter: " + e.getMessage());
+        }
+    }
 
-            BlockPos target = new BlockPos(x,y,z);
-            // Schedule auf Main Thread
-            int finalSlot = slot;
-            mc.execute(() -> {
-                player.getInventory().selectedSlot = finalSlot;
-                // Erzeuge einen BlockHitResult an der Oberkante
-                Vec3d hitVec = Vec3d.ofCenter(target);
-                BlockHitResult bhr = new BlockHitResult(hitVec, Direction.UP, target, false);
-                mc.interactionManager.interactBlock(player, Hand.MAIN_HAND, bhr);
-            });
+    private Map<String, Object> pathJobJson(PathJobs.Job job) {
+        var control = job.control();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("id", job.id);
+        out.put("state", job.state().name().toLowerCase(Locale.ROOT));
+        out.put("expanded", control.expanded());
+        if (Double.isFinite(control.frontierF())) out.put("frontier_f", control.frontierF());
+        if (Double.isFinite(control.bestH())) out.put("best_h", control.bestH());
+        out.put("elapsed_ms", job.elapsedMs());
+        if (job.path() != null) out.put("path", job.path());
+        if (job.error() != null) out.put("error", job.error());
+        return out;
+    }
+
+    private Object blockStatus(Map<String,String> params) {
+        var world = MinecraftClient.getInstance().world;
+
+        // Parameter prüfen
+        if (world == null) throw new RouteError(500, "Welt nicht verfügbar");
+        int x, y, z;
+        try {
+            x = Integer.parseInt(params.get("x"));
+            y = Integer.parseInt(params.get("y"));
+            z = Integer.parseInt(params.get("z"));
+        } catch (NumberFormatException e) {
+            throw new RouteError(400, "Ungültige Koordinaten");
+        }
+
+        BlockState state = world.getBlockState(new BlockPos(x, y, z));
+        String blockId = Registries.BLOCK.getId(state.getBlock()).toString();
+
+        // Optional kannst du auch "air" abdecken:
+        if (state.isAir()) {
+            blockId = "minecraft:air";
+        }
 
-            sendJson(ex, Map.of("placed", blockId, "at", List.of(x,y,z)));
+        return Map.of(
+                "x", x, "y", y, "z", z,
+                "block", blockId
+        );
+    }
+
+    private Object placeBlock(Map<String,String> params) {
+        var mc = MinecraftClient.getInstance();
+        ClientPlayerEntity player = mc.player;
+        if (player == null || mc.world == null) throw new RouteError(500, "Spieler oder Welt nicht verfügbar");
+
+        int x, y, z;
+        String blockId = params.get("block");
+        try {
+            x = Integer.parseInt(params.get("x"));
+            y = Integer.parseInt(params.get("y"));
+            z = Integer.parseInt(params.get("z"));
+            if (blockId == null) throw new IllegalArgumentException("block fehlt");
+            if (Identifier.tryParse(blockId) == null) throw new IllegalArgumentException("Ungültige Block-ID");
         } catch (Exception e) {
-            sendError(ex, 400, "Fehler: " + e.getMessage());
+            throw new RouteError(400, "Fehler: " + e.getMessage());
+        }
+
+        // Finde passenden BlockItem im Hotbar-Inventar
+        int slot = -1;
+        for (int i = 0; i < 9; i++) {
+            ItemStack s = player.getInventory().getStack(i);
+            if (!s.isEmpty() && s.getItem() instanceof BlockItem bi &&
+                    Registries.BLOCK.getId(bi.getBlock()).toString().equals(blockId)) {
+                slot = i; break;
+            }
         }
+        if (slot < 0) throw new RouteError(400, "BlockItem nicht im Hotbar gefunden");
+
+        BlockPos target = new BlockPos(x,y,z);
+        player.getInventory().selectedSlot = slot;
+        // Erzeuge einen BlockHitResult an der Oberkante
+        Vec3d hitVec = Vec3d.ofCenter(target);
+        BlockHitResult bhr = new BlockHitResult(hitVec, Direction.UP, target, false);
+        mc.interactionManager.interactBlock(player, Hand.MAIN_HAND, bhr);
+
+        return Map.of("placed", blockId, "at", List.of(x,y,z));
     }
 
     // ====== Neuer Endpunkt: Block abbauen ======
-    private void handleBreakBlock(HttpExchange ex) throws IOException {
+    /**
+     * Beginnt den Abbau und antwortet sofort; den Fortschritt schickt {@link BlockBreaker} pro Tick,
+     * bis der Block weg ist oder timeout_ms abläuft. Ob es geklappt hat, zeigt /wait/block.
+     */
+    private Object breakBlock(Map<String,String> params) {
         var mc = MinecraftClient.getInstance();
         ClientPlayerEntity player = mc.player;
         var world = mc.world;
-        if (player == null || world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
-            return;
-        }
+        if (player == null || world == null) throw new RouteError(500, "Spieler oder Welt nicht verfügbar");
 
-        Map<String, String> params = parseQuery(ex.getRequestURI());
+        int x, y, z;
         try {
-            int x = Integer.parseInt(params.get("x"));
-            int y = Integer.parseInt(params.get("y"));
-            int z = Integer.parseInt(params.get("z"));
-            BlockPos target = new BlockPos(x, y, z);
-
-            // Werkzeug automatisch wählen
-            mc.execute(() -> selectBestToolFor(target));
-
-            // Starten und in Hintergrund fortlaufend progress senden
-            new Thread(() -> {
-                ClientPlayerInteractionManager im = mc.interactionManager;
-                Direction dir = Direction.UP;
-                // Block-Abbau starten
-                mc.execute(() -> im.attackBlock(target, dir));
-                // Solange nicht weg, weiter progress senden
-                while (world.getBlockState(target).getBlock() != Blocks.AIR) {
-                    mc.execute(() -> im.updateBlockBreakingProgress(target, dir));
-                    try { Thread.sleep(50); } catch (InterruptedException ignored) {}
-                }
-                // Abbau beendet
-            }, "BreakThread").start();
-
-            sendJson(ex, Map.of("breaking", List.of(x, y, z)));
+            x = Integer.parseInt(params.get("x"));
+            y = Integer.parseInt(params.get("y"));
+            z = Integer.parseInt(params.get("z"));
         } catch (Exception e) {
-            sendError(ex, 400, "Fehler: " + e.getMessage());
+            throw new RouteError(400, "Fehler: " + e.getMessage());
         }
+        BlockPos target = new BlockPos(x, y, z);
+
+        // Werkzeug automatisch wählen
+        selectBestToolFor(target);
+
+        long timeout = Math.min(MAX_WAIT_MS, Math.max(0, parseLong(params.get("timeout_ms"), DEFAULT_BREAK_MS)));
+        breaker.start(mc, target, timeout);
+        return Map.of("breaking", List.of(x, y, z));
+    }
+
+    /** /break_block/cancel: bricht den laufenden Abbau ab. */
+    private Object cancelBreak(Map<String,String> params) {
+        BlockPos target = breaker.target();
+        boolean cancelled = breaker.cancel(MinecraftClient.getInstance());
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("cancelled", cancelled);
+        if (target != null) out.put("at", List.of(target.getX(), target.getY(), target.getZ()));
+        return out;
     }
 
     /**
@@ -342,210 +1234,81 @@ public class SimpleHttpServer {
     }
 
 
-    // ====== Neuer Endpunkt: Block abbauen ======
-    private void handleBreakBlock_olf(HttpExchange ex) throws IOException {
+    private Object jump(Map<String, String> params) {
         var mc = MinecraftClient.getInstance();
-        ClientPlayerEntity player = mc.player;
-        var world = mc.world;
-        if (player == null || world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
-            return;
-        }
-
-        Map<String,String> params = parseQuery(ex.getRequestURI());
-        try {
-            int x = Integer.parseInt(params.get("x"));
-            int y = Integer.parseInt(params.get("y"));
-            int z = Integer.parseInt(params.get("z"));
-            BlockPos target = new BlockPos(x,y,z);
-
-            // Starten und in Hintergrund fortlaufend progress senden
-            new Thread(() -> {
-                ClientPlayerInteractionManager im = mc.interactionManager;
-                Direction dir = Direction.UP;
-                // Block-Abbau starten
-                mc.execute(() -> im.attackBlock(target, dir));
-                // Solange nicht weg, weiter progress senden
-                while (world.getBlockState(target).getBlock() != Blocks.AIR) {
-                    mc.execute(() -> im.updateBlockBreakingProgress(target, dir));
-                    try { Thread.sleep(50); } catch (InterruptedException ignored) {}
-                }
-                // Abbau beendet
-            }, "BreakThread").start();
+        if (mc.player == null) throw new RouteError(500, "Spieler nicht verfügbar");
 
-            sendJson(ex, Map.of("breaking", List.of(x,y,z)));
-        } catch (Exception e) {
-            sendError(ex, 400, "Fehler: " + e.getMessage());
-        }
-    }
-
-    private void handleJump(HttpExchange ex) throws IOException {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
-
-        Map<String, String> params = parseQuery(ex.getRequestURI());
         String pressedParam = params.get("pressed");
-        if (pressedParam == null) {
-            sendError(ex, 400, "Parameter 'pressed' fehlt (true|false)");
-            return;
-        }
+        if (pressedParam == null) throw new RouteError(400, "Parameter 'pressed' fehlt (true|false)");
 
         boolean pressed = Boolean.parseBoolean(pressedParam);
-        MinecraftClient.getInstance().options.jumpKey.setPressed(pressed);
+        mc.options.jumpKey.setPressed(pressed);
 
-        sendJson(ex, Map.of("jumpPressed", pressed));
+        return Map.of("jumpPressed", pressed);
     }
 
-    private void handleForward(HttpExchange ex) throws IOException {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
+    private Object forward(Map<String, String> params) {
+        var mc = MinecraftClient.getInstance();
+        if (mc.player == null) throw new RouteError(500, "Spieler nicht verfügbar");
 
-        Map<String, String> params = parseQuery(ex.getRequestURI());
         String pressedParam = params.get("pressed");
-        if (pressedParam == null) {
-            sendError(ex, 400, "Parameter 'pressed' fehlt (true|false)");
-            return;
-        }
+        if (pressedParam == null) throw new RouteError(400, "Parameter 'pressed' fehlt (true|false)");
 
         boolean pressed = Boolean.parseBoolean(pressedParam);
-        MinecraftClient.getInstance().options.forwardKey.setPressed(pressed);
+        mc.options.forwardKey.setPressed(pressed);
 
-        sendJson(ex, Map.of("forwardPressed", pressed));
+        return Map.of("forwardPressed", pressed);
     }
 
-    private void handleLook(HttpExchange ex) throws IOException {
+    private Object look(Map<String, String> params) {
         ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
+        if (player == null) throw new RouteError(500, "Spieler nicht verfügbar");
 
-        Map<String, String> params = parseQuery(ex.getRequestURI());
         String yawParam   = params.get("yaw");
         String pitchParam = params.get("pitch");
 
         if (yawParam == null || pitchParam == null) {
-            sendError(ex, 400, "Parameter 'yaw' und 'pitch' erforderlich");
-            return;
+            throw new RouteError(400, "Parameter 'yaw' und 'pitch' erforderlich");
         }
 
+        float yaw, pitch;
         try {
-            float yaw   = Float.parseFloat(yawParam);
-            float pitch = Float.parseFloat(pitchParam);
-            player.setYaw(yaw);
-            player.setPitch(pitch);
-            sendJson(ex, Map.of("yaw", yaw, "pitch", pitch));
+            yaw   = Float.parseFloat(yawParam);
+            pitch = Float.parseFloat(pitchParam);
         } catch (NumberFormatException e) {
-            sendError(ex, 400, "Ungültiges Zahlenformat für yaw oder pitch");
+            throw new RouteError(400, "Ungültiges Zahlenformat für yaw oder pitch");
         }
+        player.setYaw(yaw);
+        player.setPitch(pitch);
+        return Map.of("yaw", yaw, "pitch", pitch);
     }
 
 
 
-    private void handleLookingBlock(HttpExchange ex) throws IOException {
-        var mc = MinecraftClient.getInstance();
-        ClientPlayerEntity player = mc.player;
-        if (player == null || mc.world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
-            return;
-        }
-
-        // Raycast in Blickrichtung (5 Blöcke Reichweite)
-        HitResult hit = player.raycast(5.0, 1.0f, false);
-        if (!(hit instanceof BlockHitResult)) {
-            sendJson(ex, Map.of("error", "Kein Block im Sichtfeld"));
-            return;
-        }
-
-        BlockHitResult bhr = (BlockHitResult) hit;
-        BlockPos pos = bhr.getBlockPos();
-        String blockId = Registries.BLOCK.getId(mc.world.getBlockState(pos).getBlock()).toString();
-
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("x", pos.getX());
-        out.put("y", pos.getY());
-        out.put("z", pos.getZ());
-        out.put("block", blockId);
-
-        sendJson(ex, out);
+    private Object lookingBlock(GameState st, Map<String, String> params) {
+        GameState.LookedAt looking = st.lookingBlock();
+        if (looking == null) return Map.of("error", "Kein Block im Sichtfeld");
+        return looking;
     }
-    private void handlePosition(HttpExchange ex) throws IOException {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
-
-        Vec3d pos = player.getPos();
-        Vec3d rot = new Vec3d(player.getYaw(), player.getPitch(), 0);
-        Map<String, Object> out = Map.of(
-                "x", pos.x, "y", pos.y, "z", pos.z,
-                "look_x", rot.x, "look_y", rot.y, "look_z", rot.z
-        );
-        sendJson(ex, out);
+    private Object position(GameState st, Map<String, String> params) {
+        return st.position();
     }
 
-    private void handleInventoryOld(HttpExchange ex) throws IOException {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
-
-        List<Map<String, Object>> items = new ArrayList<>();
-        for (ItemStack stack : player.getInventory().main) {
-            if (!stack.isEmpty()) {
-                items.add(Map.of(
-                        "item", Registries.ITEM.getId(stack.getItem()).toString(),
-                        "count", stack.getCount()
-                ));
-            }
-        }
-        sendJson(ex, items);
+    /** /state: der komplette Zustand des letzten Ticks (Position, Geschwindigkeit, Inventar, Blickziel). */
+    private Object gameState(GameState st, Map<String, String> params) {
+        return st;
     }
 
-    private void handleInventory(HttpExchange ex) throws IOException {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        if (player == null) {
-            sendError(ex, 500, "Spieler nicht verfügbar");
-            return;
-        }
-
-        var mainInv = player.getInventory().main; // DefaultedList<ItemStack>
-        List<Map<String, Object>> slots = new ArrayList<>();
-
-        for (int slot = 0; slot < mainInv.size(); slot++) {
-            ItemStack stack = mainInv.get(slot);
-            Map<String, Object> entry = new HashMap<>();
-            entry.put("slot", slot);
-            if (stack.isEmpty()) {
-                entry.put("item", null);
-                entry.put("count", 0);
-            } else {
-                entry.put("item", Registries.ITEM.getId(stack.getItem()).toString());
-                entry.put("count", stack.getCount());
-            }
-            slots.add(entry);
-        }
-
-        sendJson(ex, slots);
+    private Object inventory(GameState st, Map<String, String> params) {
+        return st.inventory();
     }
 
 
-    private void handleWorldItems(HttpExchange ex) throws IOException {
+    private Object worldItems(Map<String, String> params) {
         var mc = MinecraftClient.getInstance();
         var player = mc.player;
         var world = mc.world;
-        if (player == null || world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
-            return;
-        }
+        if (player == null || world == null) throw new RouteError(500, "Spieler oder Welt nicht verfügbar");
 
         List<Map<String, Object>> drops = new ArrayList<>();
         Box box = player.getBoundingBox().expand(32);
@@ -560,9 +1323,16 @@ public class SimpleHttpServer {
                             "count", stack.getCount()
                     ));
                 });
-        sendJson(ex, drops);
+        return drops;
     }
 
+    /**
+     * Würfel mit Radius r um x,y,z (Standard: Spielerposition). Die Antwort trägt immer den Header
+     * X-Snapshot-Version; mit since=<Version> kommen nur die seitdem geänderten Sections, als
+     * {version, full, sections, blocks} bzw. binär als Delta (siehe SnapshotCodec). Ist since zu alt
+     * oder aus einer anderen Welt, wird der ganze Würfel mit full=true geliefert. Für Deltas sollte
+     * der Client einen festen Mittelpunkt angeben, sonst wandert der Würfel mit dem Spieler.
+     */
     private void handleWorldSnapshot(HttpExchange ex) throws IOException {
         var mc = MinecraftClient.getInstance();
         var player = mc.player;
@@ -573,24 +1343,138 @@ public class SimpleHttpServer {
         }
 
         Map<String, String> params = parseQuery(ex.getRequestURI());
-        int radius = parseInt(params.get("r"), 5);
-
-        BlockPos center = player.getBlockPos();
-        Map<String, String> blocks = new HashMap<>();
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dy = -radius; dy <= radius; dy++) {
-                for (int dz = -radius; dz <= radius; dz++) {
-                    BlockPos p = center.add(dx, dy, dz);
-                    BlockState state = world.getBlockState(p);
-                    String id = Registries.BLOCK.getId(state.getBlock()).toString();
-                    blocks.put(p.getX()+","+p.getY()+","+p.getZ(), id);
+        int radius = Math.max(0, Math.min(parseInt(params.get("r"), 5), SectionSnapshot.MAX_RADIUS));
+        BlockPos center;
+        try {
+            center = params.containsKey("x")
+                    ? new BlockPos(Integer.parseInt(params.get("x")), Integer.parseInt(params.get("y")), Integer.parseInt(params.get("z")))
+                    : onClient(player::getBlockPos);
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "Ungültige Koordinaten");
+            return;
+        }
+
+        // format=binary oder Accept: application/octet-stream → Palette + Lauflängen, siehe SnapshotCodec
+        String format = params.get("format");
+        String accept = ex.getRequestHeaders().getFirst("Accept");
+        boolean binary = "binary".equals(format) || (format == null && accept != null && accept.contains("application/octet-stream"));
+        if (format != null && !format.equals("json") && !format.equals("binary")) {
+            sendError(ex, 400, "Unbekanntes Format: " + format);
+            return;
+        }
+
+        BlockPos min = center.add(-radius, -radius, -radius), max = center.add(radius, radius, radius);
+        SectionVersions versions = sectionVersionsFor(world);
+        boolean delta = params.containsKey("since");
+        long since = parseLong(params.get("since"), -1);
+        if (delta && versions.isValid(since)) {
+            sendWorldDelta(ex, world, versions, min, max, since, binary);
+            return;
+        }
+
+        // Sections auf dem Client-Thread kopieren, zusammen mit der passenden Version; ausgelesen wird auf dem HTTP-Thread
+        long[] version = new long[1];
+        SectionSnapshot snapshot = onClient(() -> {
+            version[0] = versions.current();
+            return SectionSnapshot.captureCube(world, center, radius);
+        });
+        ex.getResponseHeaders().set("X-Snapshot-Version", Long.toString(version[0]));
+        if (binary) {
+            int d = 2 * radius + 1;
+            sendBytes(ex, "application/octet-stream", SnapshotCodec.encode(snapshot, min, d, d, d));
+            return;
+        }
+        if (!delta) {
+            writeJson(ex, w -> {
+                w.beginObject();
+                writeBlocks(w, snapshot, min, max, new IdentityHashMap<>());
+                w.endObject();
+            });
+            return;
+        }
+        writeJson(ex, w -> {
+            w.beginObject();
+            w.name("version").value(version[0]);
+            w.name("full").value(true);
+            w.name("blocks").beginObject();
+            writeBlocks(w, snapshot, min, max, new IdentityHashMap<>());
+            w.endObject();
+            w.endObject();
+        });
+    }
+
+    /** Nur die Sections im Würfel [min, max], deren Version neuer als since ist. */
+    private void sendWorldDelta(HttpExchange ex, World world, SectionVersions versions, BlockPos min, BlockPos max,
+                                long since, boolean binary) throws IOException {
+        long[] version = new long[1];
+        List<Long> changed = new ArrayList<>();
+        SectionSnapshot snapshot = onClient(() -> {
+            version[0] = versions.current();
+            for (int sx = min.getX() >> 4; sx <= max.getX() >> 4; sx++)
+                for (int sy = min.getY() >> 4; sy <= max.getY() >> 4; sy++)
+                    for (int sz = min.getZ() >> 4; sz <= max.getZ() >> 4; sz++)
+                        if (versions.changedSince(sx, sy, sz, since)) changed.add(PackedPos.pack(sx, sy, sz));
+            return SectionSnapshot.captureSections(world, changed.stream().mapToLong(Long::longValue).toArray());
+        });
+
+        List<SnapshotCodec.Box> boxes = new ArrayList<>(changed.size());
+        for (long key : changed) {
+            int bx = PackedPos.x(key) << 4, by = PackedPos.y(key) << 4, bz = PackedPos.z(key) << 4;
+            boxes.add(new SnapshotCodec.Box(
+                    new BlockPos(Math.max(bx, min.getX()), Math.max(by, min.getY()), Math.max(bz, min.getZ())),
+                    new BlockPos(Math.min(bx + 15, max.getX()), Math.min(by + 15, max.getY()), Math.min(bz + 15, max.getZ()))));
+        }
+        ex.getResponseHeaders().set("X-Snapshot-Version", Long.toString(version[0]));
+        if (binary) {
+            sendBytes(ex, "application/octet-stream", SnapshotCodec.encodeDelta(snapshot, boxes, version[0]));
+            return;
+        }
+        writeJson(ex, w -> {
+            w.beginObject();
+            w.name("version").value(version[0]);
+            w.name("full").value(false);
+            w.name("sections").beginArray();
+            for (long key : changed) {
+                w.beginArray().value(PackedPos.x(key)).value(PackedPos.y(key)).value(PackedPos.z(key)).endArray();
+            }
+            w.endArray();
+            w.name("blocks").beginObject();
+            Map<Block, String> ids = new IdentityHashMap<>();
+            for (SnapshotCodec.Box box : boxes) writeBlocks(w, snapshot, box.min(), box.max(), ids);
+            w.endObject();
+            w.endObject();
+        });
+    }
+
+    /** Schreibt "x,y,z": "block-id" für jeden Block in [min, max]; ids merkt sich die ID-Strings je Block. */
+    private static void writeBlocks(JsonWriter w, SectionSnapshot snapshot, BlockPos min, BlockPos max,
+                                    Map<Block, String> ids) throws IOException {
+        StringBuilder key = new StringBuilder(24);
+        for (int x = min.getX(); x <= max.getX(); x++) {
+            for (int y = min.getY(); y <= max.getY(); y++) {
+                for (int z = min.getZ(); z <= max.getZ(); z++) {
+                    Block block = snapshot.getBlockState(x, y, z).getBlock();
+                    String id = ids.computeIfAbsent(block, b -> Registries.BLOCK.getId(b).toString());
+                    key.setLength(0);
+                    key.append(x).append(',').append(y).append(',').append(z);
+                    w.name(key.toString()).value(id);
                 }
             }
         }
-        sendJson(ex, blocks);
     }
 
-    private void handleNextBlock(HttpExchange ex) throws IOException {
+    /** Versionen gelten für eine Welt; beim ersten Ereignis oder Zugriff aus einer anderen Welt neu anfangen. */
+    private synchronized SectionVersions sectionVersionsFor(World world) {
+        if (versionsWorld != world) {
+            sectionVersions.reset();
+            versionsWorld = world;
+        }
+        return sectionVersions;
+    }
+
+    // ====== /next_blocks?block=<id>&r=<Radius>&n=<Anzahl>: die n nächsten Blöcke, nach Abstand sortiert ======
+    // /next_block liefert nur den nächsten als {x,y,z} bzw. {"error": ...}
+    private void handleNextBlocks(HttpExchange ex, boolean single) throws IOException {
         var mc = MinecraftClient.getInstance();
         var player = mc.player;
         var world = mc.world;
@@ -610,100 +1494,214 @@ public class SimpleHttpServer {
             sendError(ex, 400, "Ungültige Block-ID");
             return;
         }
-        Block target = Registries.BLOCK.get(id);
-        if (target == null) {
+        if (!Registries.BLOCK.containsId(id)) {
             sendError(ex, 400, "Block nicht gefunden");
             return;
         }
-        int maxR = parseInt(params.get("r"), 64);
-        BlockPos origin = player.getBlockPos();
-
-        for (int r = 1; r <= maxR; r++) {
-            for (BlockPos pos : getShellPositions(origin, r)) {
-                if (world.getBlockState(pos).getBlock().equals(target)) {
-                    sendJson(ex, Map.of(
-                            "x", pos.getX(), "y", pos.getY(), "z", pos.getZ()
-                    ));
-                    return;
-                }
+        Block target = Registries.BLOCK.get(id);
+        int maxR = Math.max(1, Math.min(parseInt(params.get("r"), 64), MAX_BLOCK_RADIUS));
+        int n = single ? 1 : Math.max(1, Math.min(parseInt(params.get("n"), 10), MAX_NEXT_BLOCKS));
+        BlockPos origin = onClient(player::getBlockPos);
+        List<BlockSearch.Hit> hits = nearestBlocks(world, origin, maxR, target, n);
+
+        if (single) {
+            if (hits.isEmpty()) {
+                sendJson(ex, Map.of("error", "Kein "+ blockParam +" im Radius "+ maxR));
+                return;
             }
+            BlockPos pos = hits.get(0).pos();
+            sendJson(ex, Map.of("x", pos.getX(), "y", pos.getY(), "z", pos.getZ()));
+            return;
         }
-        sendJson(ex, Map.of("error", "Kein "+ blockParam +" im Radius "+ maxR));
+        sendHits(ex, hits);
     }
 
-    private void handleEntities(HttpExchange ex) throws IOException {
+    /**
+     * Die n nächsten Blöcke target im Würfel um origin. Beobachtete Blöcke kommen aus dem
+     * {@link BlockIndexer}; sonst werden auf dem Client-Thread nur die Paletten geprüft und die
+     * Sections kopiert, die target enthalten, gesucht wird danach.
+     */
+    private List<BlockSearch.Hit> nearestBlocks(World world, BlockPos origin, int radius, Block target, int n) {
+        if (blockIndexer.covers(world, target) && blockIndexer.flush(INDEX_FLUSH_MS)) {
+            return blockIndexer.index().nearest(target, origin, radius, n);
+        }
+        Predicate<BlockState> match = bs -> bs.getBlock() == target;
+        SectionSnapshot snapshot = onClient(() -> SectionSnapshot.captureCube(world, origin, radius, match));
+        return BlockSearch.nearest(snapshot, origin, radius, match, n);
+    }
+
+    /**
+     * Eintrag von /entities. health, vx/vy/vz und id sind nur gesetzt, wenn sie über fields
+     * angefordert wurden; Gson lässt null-Felder weg.
+     */
+    private record EntityInfo(String entity, double x, double y, double z, double distance,
+                              Float health, Double vx, Double vy, Double vz, Integer id) {}
+
+    /**
+     * /entities?r=32&types=minecraft:zombie,minecraft:skeleton&limit=5&fields=health,velocity,id
+     * Mobs (Tiere eingeschlossen) im Würfel mit Radius r um den Spieler, nach Abstand sortiert.
+     * Das Ergebnis wird pro Client-Tick und Parametersatz gemerkt; alle Aufrufer innerhalb eines
+     * Ticks (auch /batch und /stream) teilen sich denselben Durchlauf.
+     */
+    private Object entities(Map<String, String> params) {
         var mc = MinecraftClient.getInstance();
         var player = mc.player;
         var world = mc.world;
-        if (player == null || world == null) {
-            sendError(ex, 500, "Spieler oder Welt nicht verfügbar");
-            return;
-        }
+        if (player == null || world == null) throw new RouteError(500, "Spieler oder Welt nicht verfügbar");
 
-        Map<String, String> params = parseQuery(ex.getRequestURI());
         int radius = parseInt(params.get("r"), 32);
-        Box box = player.getBoundingBox().expand(radius);
-
-        List<Map<String, Object>> list = new ArrayList<>();
-        world.getEntitiesByClass(MobEntity.class, box, e -> true)
-                .forEach(e -> addEntity(list, e));
-        world.getEntitiesByClass(AnimalEntity.class, box, e -> true)
-                .forEach(e -> addEntity(list, e));
+        int limit = Math.max(0, parseInt(params.get("limit"), Integer.MAX_VALUE));
+        String types = params.getOrDefault("types", "");
+        String fields = params.getOrDefault("fields", "");
+        if (entitiesCacheTick != clientTick) {
+            entitiesCache.clear();
+            entitiesCacheTick = clientTick;
+        }
+        String key = radius + "|" + limit + "|" + types + "|" + fields;
+        List<EntityInfo> cached = entitiesCache.get(key);
+        if (cached != null) return cached;
+
+        Set<EntityType<?>> whitelist = null;
+        if (!types.isBlank()) {
+            whitelist = new HashSet<>();
+            for (String t : types.split(",")) {
+                Identifier id = Identifier.tryParse(t.trim());
+                if (id == null || !Registries.ENTITY_TYPE.containsId(id)) throw new RouteError(400, "Unbekannter Entity-Typ: " + t);
+                whitelist.add(Registries.ENTITY_TYPE.get(id));
+            }
+        }
+        boolean withHealth = false, withVelocity = false, withId = false;
+        for (String f : fields.split(",")) {
+            switch (f.trim()) {
+                case "" -> { }
+                case "health" -> withHealth = true;
+                case "velocity" -> withVelocity = true;
+                case "id" -> withId = true;
+                default -> throw new RouteError(400, "Unbekanntes Feld: " + f + " (verfügbar: health,velocity,id)");
+            }
+        }
 
-        sendJson(ex, list);
+        // AnimalEntity ist selbst ein MobEntity: ein Durchlauf findet alles genau einmal
+        Set<EntityType<?>> filter = whitelist;
+        List<MobEntity> found = world.getEntitiesByClass(MobEntity.class, player.getBoundingBox().expand(radius),
+                e -> filter == null || filter.contains(e.getType()));
+        List<EntityInfo> list = new ArrayList<>(found.size());
+        for (MobEntity e : found) {
+            var pos = e.getPos();
+            var v = withVelocity ? e.getVelocity() : null;
+            list.add(new EntityInfo(
+                    e.getType().getRegistryEntry().registryKey().getValue().toString(),
+                    pos.x, pos.y, pos.z, Math.sqrt(e.squaredDistanceTo(player)),
+                    withHealth ? e.getHealth() : null,
+                    v != null ? v.x : null, v != null ? v.y : null, v != null ? v.z : null,
+                    withId ? e.getId() : null));
+        }
+        list.sort(Comparator.comparingDouble(EntityInfo::distance));
+        List<EntityInfo> result = List.copyOf(list.subList(0, Math.min(limit, list.size())));
+        entitiesCache.put(key, result);
+        return result;
     }
 
     // Hilfsmethode zum Parsen der Query-Parameter
+    /** Schlüssel und Werte URL-dekodiert (Clients schicken z.B. minecraft%3Aair oder a%2Cb). */
     private Map<String, String> parseQuery(URI uri) {
         Map<String, String> map = new HashMap<>();
         String query = uri.getRawQuery();
         if (query == null) return map;
         for (String part : query.split("&")) {
             String[] kv = part.split("=", 2);
-            if (kv.length==2) map.put(kv[0], kv[1]);
+            if (kv.length==2) map.put(decode(kv[0]), decode(kv[1]));
         }
         return map;
     }
 
+    /** Ungültige Escapes (einzelnes %) bleiben wie sie sind. */
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+
     private int parseInt(String s, int def) {
         try { return Integer.parseInt(s); }
         catch (Exception e) { return def; }
     }
 
+    private long parseLong(String s, long def) {
+        try { return Long.parseLong(s); }
+        catch (Exception e) { return def; }
+    }
+
+    /** Radius r einer Pfadsuche; fehlt er, gilt def. Außerhalb von 1..MAX_PATH_RADIUS gibt es 400. */
+    private static int pathRadius(Map<String, String> p, int def) {
+        String s = p.get("r");
+        int r = s == null ? def : Integer.parseInt(s);
+        if (r < 1 || r > MAX_PATH_RADIUS)
+            throw new RouteError(400, "r muss zwischen 1 und " + MAX_PATH_RADIUS + " liegen");
+        return r;
+    }
+
+    private double parseDouble(String s, double def) {
+        try { return Double.parseDouble(s); }
+        catch (Exception e) { return def; }
+    }
+
     private void sendError(HttpExchange ex, int code, String msg) throws IOException {
-        byte[] data = msg.getBytes();
+        byte[] data = msg.getBytes(StandardCharsets.UTF_8);
         ex.sendResponseHeaders(code, data.length);
         try (OutputStream os = ex.getResponseBody()) {
             os.write(data);
         }
     }
 
+    /** Schreibt einen JSON-Körper Feld für Feld, ohne Map/List als Zwischenstufe. */
+    private interface JsonBody {
+        void write(JsonWriter w) throws IOException;
+    }
+
     private void sendJson(HttpExchange ex, Object obj) throws IOException {
-        String json = gson.toJson(obj);
-        byte[] data = json.getBytes();
+        writeJson(ex, w -> writeValue(w, obj));
+    }
+
+    /**
+     * Serialisiert direkt in die Antwort ({@link ResponseStream}): kleine Körper mit Content-Length,
+     * große per Chunked Transfer, ohne String- oder byte[]-Kopie des ganzen Dokuments.
+     */
+    private void writeJson(HttpExchange ex, JsonBody body) throws IOException {
         ex.getResponseHeaders().set("Content-Type", "application/json");
-        ex.sendResponseHeaders(200, data.length);
-        try (OutputStream os = ex.getResponseBody()) {
-            os.write(data);
+        ResponseStream out = new ResponseStream(ex, 200, compressMin, httpMetrics);
+        try {
+            JsonWriter w = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            body.write(w);
+            w.close();
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            if (out.isCommitted()) throw e;
+            ex.getResponseHeaders().remove("Content-Type");
+            sendError(ex, 500, "Serialisierung fehlgeschlagen: " + e.getMessage());
         }
     }
 
-    private void addEntity(List<Map<String,Object>> list, net.minecraft.entity.Entity e) {
-        var pos = e.getPos();
-        list.add(Map.of(
-                "entity", e.getType().getRegistryEntry().registryKey().getValue().toString(),
-                "x", pos.x, "y", pos.y, "z", pos.z
-        ));
+    /** Für Antworten, die ohnehin als Bytes zwischengespeichert werden (siehe {@link #stateRoute}). */
+    private byte[] toJsonBytes(Object obj) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        JsonWriter w = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeValue(w, obj);
+        w.close();
+        return out.toByteArray();
     }
 
-    private List<BlockPos> getShellPositions(BlockPos center, int radius) {
-        List<BlockPos> out = new ArrayList<>();
-        int r = radius;
-        for (int x=-r; x<=r; x++) for (int y=-r; y<=r; y++) for (int z=-r; z<=r; z++) {
-            if (Math.abs(x)==r || Math.abs(y)==r || Math.abs(z)==r) {
-                out.add(center.add(x,y,z));
-            }
+    private void writeValue(JsonWriter w, Object obj) throws IOException {
+        if (obj == null) w.nullValue();
+        else gson.toJson(obj, obj.getClass(), w);
+    }
+
+    private void sendBytes(HttpExchange ex, String contentType, byte[] data) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        try (ResponseStream os = new ResponseStream(ex, 200, compressMin, httpMetrics)) {
+            os.write(data);
         }
-        return out;
     }
 }
@@ -0,0 +1,188 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.Block;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binärformat für /world_snapshot?format=binary, alle Zahlen Big-Endian:
+ * <pre>
+ *   "AZWS" u8 Version
+ *   i32 x, y, z        kleinste Ecke
+ *   i32 sx, sy, sz     Ausdehnung
+ *   varint n, dann n × (varint Länge, UTF-8 Block-ID)   Palette
+ *   Läufe (varint Paletten-Index, varint Länge) bis alle sx·sy·sz Zellen abgedeckt sind
+ * </pre>
+ * Zellen laufen x außen, dann z, y innen, also Säule für Säule von unten nach oben;
+ * so fallen Luft über dem Boden und Stein darunter zu wenigen Läufen zusammen.
+ * Varints sind vorzeichenlos, 7 Bit pro Byte, niederwertige Gruppe zuerst.
+ * <p>
+ * Delta (/world_snapshot?since=..&format=binary): "AZWD" u8 Version, i64 Schnappschuss-Version,
+ * varint n, dann n × (varint Länge, vollständiger Quader wie oben), ein Quader pro geänderter
+ * Section, auf den angefragten Würfel zugeschnitten.
+ */
+public final class SnapshotCodec {
+    public static final byte[] MAGIC = {'A', 'Z', 'W', 'S'};
+    public static final byte[] DELTA_MAGIC = {'A', 'Z', 'W', 'D'};
+    public static final int VERSION = 1;
+
+    /** Dekodierter Schnappschuss; cells[((x·sz) + z)·sy + y] indiziert palette. */
+    public record Decoded(BlockPos origin, int sx, int sy, int sz, String[] palette, int[] cells) {
+        public String blockAt(int x, int y, int z) {
+            int lx = x - origin.getX(), ly = y - origin.getY(), lz = z - origin.getZ();
+            return palette[cells[(lx * sz + lz) * sy + ly]];
+        }
+    }
+
+    private SnapshotCodec() {}
+
+    /** Ein Delta: Schnappschuss-Version und die geänderten Quader. */
+    public record Delta(long version, List<Decoded> boxes) {}
+
+    /** Ausschnitt [min, max] (inklusive) für {@link #encodeDelta}. */
+    public record Box(BlockPos min, BlockPos max) {}
+
+    public static byte[] encodeDelta(SectionSnapshot snapshot, List<Box> boxes, long version) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 + boxes.size() * 256);
+        out.writeBytes(DELTA_MAGIC);
+        out.write(VERSION);
+        out.writeBytes(ByteBuffer.allocate(8).putLong(version).array());
+        writeVarint(out, boxes.size());
+        for (Box b : boxes) {
+            byte[] box = encode(snapshot, b.min(), b.max().getX() - b.min().getX() + 1,
+                    b.max().getY() - b.min().getY() + 1, b.max().getZ() - b.min().getZ() + 1);
+            writeVarint(out, box.length);
+            out.writeBytes(box);
+        }
+        return out.toByteArray();
+    }
+
+    public static Delta decodeDelta(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        for (byte m : DELTA_MAGIC) {
+            if (in.get() != m) throw new IllegalArgumentException("Kein Delta-Schnappschuss");
+        }
+        int version = in.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unbekannte Version: " + version);
+        long snapshotVersion = in.getLong();
+        int n = readVarint(in);
+        List<Decoded> boxes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] box = new byte[readVarint(in)];
+            in.get(box);
+            boxes.add(decode(box));
+        }
+        return new Delta(snapshotVersion, boxes);
+    }
+
+    /** Kodiert den Quader [min, min + size) aus snapshot. */
+    public static byte[] encode(SectionSnapshot snapshot, BlockPos min, int sx, int sy, int sz) {
+        Map<Block, Integer> index = new IdentityHashMap<>();
+        List<Block> palette = new ArrayList<>();
+        ByteArrayOutputStream runs = new ByteArrayOutputStream(1 << 16);
+        int x0 = min.getX(), y0 = min.getY(), z0 = min.getZ();
+        int runId = -1, runLength = 0;
+        Block last = null;
+        int lastId = -1;
+        for (int x = 0; x < sx; x++) {
+            for (int z = 0; z < sz; z++) {
+                for (int y = 0; y < sy; y++) {
+                    Block b = snapshot.getBlockState(x0 + x, y0 + y, z0 + z).getBlock();
+                    if (b != last) {
+                        last = b;
+                        lastId = index.computeIfAbsent(b, k -> {
+                            palette.add(k);
+                            return palette.size() - 1;
+                        });
+                    }
+                    if (lastId == runId) {
+                        runLength++;
+                        continue;
+                    }
+                    if (runLength > 0) {
+                        writeVarint(runs, runId);
+                        writeVarint(runs, runLength);
+                    }
+                    runId = lastId;
+                    runLength = 1;
+                }
+            }
+        }
+        if (runLength > 0) {
+            writeVarint(runs, runId);
+            writeVarint(runs, runLength);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(runs.size() + 64 + palette.size() * 24);
+        out.writeBytes(MAGIC);
+        out.write(VERSION);
+        ByteBuffer header = ByteBuffer.allocate(24);
+        header.putInt(x0).putInt(y0).putInt(z0).putInt(sx).putInt(sy).putInt(sz);
+        out.writeBytes(header.array());
+        writeVarint(out, palette.size());
+        for (Block b : palette) {
+            byte[] id = Registries.BLOCK.getId(b).toString().getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, id.length);
+            out.writeBytes(id);
+        }
+        out.writeBytes(runs.toByteArray());
+        return out.toByteArray();
+    }
+
+    public static Decoded decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        for (byte m : MAGIC) {
+            if (in.get() != m) throw new IllegalArgumentException("Kein Welt-Schnappschuss");
+        }
+        int version = in.get();
+        if (version != VERSION) throw new IllegalArgumentException("Unbekannte Version: " + version);
+        BlockPos origin = new BlockPos(in.getInt(), in.getInt(), in.getInt());
+        int sx = in.getInt(), sy = in.getInt(), sz = in.getInt();
+        if (sx < 0 || sy < 0 || sz < 0 || (long) sx * sy * sz > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Ungültige Ausdehnung: " + sx + "x" + sy + "x" + sz);
+        String[] palette = new String[readVarint(in)];
+        for (int i = 0; i < palette.length; i++) {
+            byte[] id = new byte[readVarint(in)];
+            in.get(id);
+            palette[i] = new String(id, StandardCharsets.UTF_8);
+        }
+        int[] cells = new int[sx * sy * sz];
+        int pos = 0;
+        while (pos < cells.length) {
+            int id = readVarint(in), n = readVarint(in);
+            if (id < 0 || id >= palette.length || n <= 0 || n > cells.length - pos)
+                throw new IllegalArgumentException("Ungültiger Lauf bei Zelle " + pos);
+            Arrays.fill(cells, pos, pos + n, id);
+            pos += n;
+        }
+        return new Decoded(origin, sx, sy, sz, palette, cells);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int v = 0, shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+}
@@ -0,0 +1,66 @@
+package qwermotion.azathoth;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Sampler für Suchen außerhalb des Client-Threads, die vorher nicht wissen, welche Sections sie
+ * brauchen (hierarchische Suche, D*-Lite-Sessions). Fehlt eine Section, wird sie zusammen mit
+ * ihren Nachbarn (5×3×5 Sections) über capture kopiert; der Aufrufer legt capture auf den
+ * Client-Thread, z.B. mit {@link SectionSnapshot#captureSections}. Abgetastet wird danach auf
+ * dem suchenden Thread, die Live-Welt wird dort nie angefasst.
+ * <p>
+ * Gedacht für genau ein {@link CostGrid}: das tastet jede Section nur einmal ab, ausgelieferte
+ * Sections werden deshalb nicht noch einmal kopiert. Erst {@link #invalidate} (aus
+ * {@link CostGrid#refresh}) gibt sie wieder frei, dann wird frisch kopiert.
+ */
+public final class SnapshotSampler implements CostGrid.Sampler {
+    /** Mehr vorab kopierte, noch nicht abgefragte Sections werden nicht aufgehoben. */
+    static final int MAX_PENDING = 4096;
+
+    private final Function<long[], SectionSnapshot> capture;
+    private final Map<Long, SectionSnapshot> pending = new HashMap<>();
+    private final Set<Long> delivered = new HashSet<>();
+
+    /** @param capture kopiert die Sections mit den angegebenen Schlüsseln ({@link PackedPos#pack}) */
+    public SnapshotSampler(Function<long[], SectionSnapshot> capture) {
+        this.capture = capture;
+    }
+
+    @Override
+    public void sample(int sx, int sy, int sz, byte[] flags, byte[] hardness) {
+        snapshot(sx, sy, sz).sample(sx, sy, sz, flags, hardness);
+    }
+
+    @Override
+    public synchronized void invalidate(int sx, int sy, int sz) {
+        long key = PackedPos.pack(sx, sy, sz);
+        pending.remove(key);
+        delivered.remove(key);
+    }
+
+    private synchronized SectionSnapshot snapshot(int sx, int sy, int sz) {
+        long center = PackedPos.pack(sx, sy, sz);
+        delivered.add(center);
+        SectionSnapshot snapshot = pending.remove(center);
+        if (snapshot != null) return snapshot;
+
+        if (pending.size() > MAX_PENDING) pending.clear();
+        long[] keys = new long[5 * 3 * 5];
+        int n = 0;
+        for (int dx = -2; dx <= 2; dx++)
+            for (int dy = -1; dy <= 1; dy++)
+                for (int dz = -2; dz <= 2; dz++) {
+                    long key = PackedPos.pack(sx + dx, sy + dy, sz + dz);
+                    if (key == center || !pending.containsKey(key) && !delivered.contains(key)) keys[n++] = key;
+                }
+        snapshot = capture.apply(Arrays.copyOf(keys, n));
+        // auch leere und ungeladene Sections merken, die Kopie liefert für sie Luft
+        for (int i = 0; i < n; i++) if (keys[i] != center) pending.put(keys[i], snapshot);
+        return snapshot;
+    }
+}
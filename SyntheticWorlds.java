@@ -0,0 +1,164 @@
+package qwermotion.azathoth;
+
+import java.util.List;
+
+/**
+ * Künstliche Welten im Speicher als {@link CostGrid.Sampler}, damit der Pathfinder ohne
+ * laufenden Client gemessen und verglichen werden kann (siehe PathfinderBenchmark).
+ * Alle Welten sind deterministisch und unendlich groß; der Boden liegt bei {@link #SURFACE}.
+ */
+public final class SyntheticWorlds {
+    public static final int SURFACE = 63;
+
+    private static final byte AIR = (byte) (CostGrid.AIR | CostGrid.PASSABLE);
+    private static final byte SOLID = (byte) CostGrid.FLOOR;
+    private static final byte WATER = (byte) (CostGrid.FLUID | CostGrid.PASSABLE);
+
+    /**
+     * Ein Messfall: Welt, Start und Ziel. Start und Ziel ({@link PackedPos}) stehen jeweils auf
+     * dem Boden. Keine Minecraft-Klassen, damit die Messung ohne Spiel auf dem Klassenpfad läuft.
+     */
+    public record Scenario(String name, CostGrid.Sampler world, long start, long goal) {}
+
+    private SyntheticWorlds() {}
+
+    /** Alle Messfälle mit Start und Ziel im Abstand distance entlang X. */
+    public static List<Scenario> scenarios(int distance) {
+        return List.of(plains(distance), caves(distance), mountain(distance), maze(distance), unreachable(distance));
+    }
+
+    public static Scenario scenario(String name, int distance) {
+        return switch (name) {
+            case "plains" -> plains(distance);
+            case "caves" -> caves(distance);
+            case "mountain" -> mountain(distance);
+            case "maze" -> maze(distance);
+            case "unreachable" -> unreachable(distance);
+            default -> throw new IllegalArgumentException("Unbekannte Welt: " + name);
+        };
+    }
+
+    /** Flache Ebene aus Erde. */
+    public static Scenario plains(int distance) {
+        CostGrid.Sampler w = (sx, sy, sz, f, h) -> fill(sx, sy, sz, f, h, (x, y, z) -> y <= SURFACE ? 1 : -1);
+        return onSurface("plains", w, distance);
+    }
+
+    /**
+     * Steinboden mit Höhlen aus Gitterrauschen: Start oben, Ziel tief in einer Höhle,
+     * die Suche muss zwischen Graben und Höhlengängen abwägen.
+     */
+    public static Scenario caves(int distance) {
+        CostGrid.Sampler w = (sx, sy, sz, f, h) -> fill(sx, sy, sz, f, h, (x, y, z) -> {
+            if (y > SURFACE) return -1;
+            if (y < SURFACE - 4 && noise(x, y, z, 8) > 0.6) return -1;
+            return 2;
+        });
+        long start = PackedPos.pack(0, SURFACE + 1, 0);
+        long goal = PackedPos.pack(distance, SURFACE - Math.max(8, distance / 4), 0);
+        return new Scenario("caves", w, start, goal);
+    }
+
+    /** Hügelland mit einem Bergkamm quer zur Strecke. */
+    public static Scenario mountain(int distance) {
+        int ridge = distance / 2;
+        CostGrid.Sampler w = (sx, sy, sz, f, h) -> fill(sx, sy, sz, f, h,
+                (x, y, z) -> y <= mountainTop(x, z, ridge) ? 2 : -1);
+        long start = PackedPos.pack(0, mountainTop(0, 0, ridge) + 1, 0);
+        long goal = PackedPos.pack(distance, mountainTop(distance, 0, ridge) + 1, 0);
+        return new Scenario("mountain", w, start, goal);
+    }
+
+    /**
+     * Irrgarten aus Wassersäulen auf einer einlagigen Bodenplatte über Wasser: weder
+     * Untergraben noch Durchbrechen geht, nur Überklettern mit teurem Gerüst. Der Pathfinder
+     * wägt lange Gänge gegen teure Abkürzungen ab und expandiert entsprechend viel.
+     */
+    public static Scenario maze(int distance) {
+        CostGrid.Sampler w = (sx, sy, sz, f, h) -> fill(sx, sy, sz, f, h, (x, y, z) -> {
+            if (y < SURFACE) return -2;
+            if (y <= SURFACE + 6 && mazeWall(x, z)) return -2;
+            return y == SURFACE ? 1 : -1;
+        });
+        // Start und Ziel in Zellmitten, die Wände liegen auf Vielfachen von 8
+        return new Scenario("maze", w, PackedPos.pack(4, SURFACE + 1, 4), PackedPos.pack(4 + distance, SURFACE + 1, 4));
+    }
+
+    /**
+     * Ziel in einer geschlossenen Wasserhülle: nicht erreichbar, die Suche schöpft den
+     * ganzen Radius aus. Misst den schlechtesten Fall.
+     */
+    public static Scenario unreachable(int distance) {
+        int gx = distance, gy = SURFACE + 1;
+        CostGrid.Sampler w = (sx, sy, sz, f, h) -> fill(sx, sy, sz, f, h, (x, y, z) -> {
+            int d = Math.max(Math.abs(x - gx), Math.max(Math.abs(y - gy), Math.abs(z)));
+            if (d == 2) return -2;
+            return y <= SURFACE ? 1 : -1;
+        });
+        return onSurface("unreachable", w, distance);
+    }
+
+    private static Scenario onSurface(String name, CostGrid.Sampler w, int distance) {
+        return new Scenario(name, w, PackedPos.pack(0, SURFACE + 1, 0), PackedPos.pack(distance, SURFACE + 1, 0));
+    }
+
+    /** Härte des Blocks an (x,y,z); -1 für Luft, -2 für Wasser. */
+    private interface Terrain {
+        int at(int x, int y, int z);
+    }
+
+    private static void fill(int sx, int sy, int sz, byte[] flags, byte[] hardness, Terrain t) {
+        int bx = sx << 4, by = sy << 4, bz = sz << 4;
+        for (int i = 0; i < 4096; i++) {
+            int v = t.at(bx | (i & 15), by | (i >> 8), bz | ((i >> 4) & 15));
+            if (v == -1) {
+                flags[i] = AIR;
+                hardness[i] = 0;
+            } else if (v == -2) {
+                flags[i] = WATER;
+                hardness[i] = 0;
+            } else {
+                flags[i] = SOLID;
+                hardness[i] = (byte) v;
+            }
+        }
+    }
+
+    private static int mountainTop(int x, int z, int ridge) {
+        int base = SURFACE + (int) Math.round(3 * Math.sin(x / 11.0) + 2 * Math.cos(z / 7.0));
+        return base + Math.max(0, 30 - Math.abs(x - ridge));
+    }
+
+    private static boolean mazeWall(int x, int z) {
+        int cx = Math.floorDiv(x, 8), cz = Math.floorDiv(z, 8);
+        int lx = Math.floorMod(x, 8), lz = Math.floorMod(z, 8);
+        if (lx != 0 && lz != 0) return false;
+        if (lx == 0 && lz == 0) return true;
+        // pro Zelle eine Öffnung in der West- bzw. Nordwand, nie beide geschlossen
+        int open = Math.floorMod(hash(cx, 0, cz), 2);
+        if (lx == 0) return open != 0 || lz < 3 || lz > 5;
+        return open != 1 || lx < 3 || lx > 5;
+    }
+
+    /** Wertrauschen in [0,1] auf einem Gitter der Weite cell, trilinear interpoliert. */
+    private static double noise(int x, int y, int z, int cell) {
+        int gx = Math.floorDiv(x, cell), gy = Math.floorDiv(y, cell), gz = Math.floorDiv(z, cell);
+        double fx = (double) Math.floorMod(x, cell) / cell;
+        double fy = (double) Math.floorMod(y, cell) / cell;
+        double fz = (double) Math.floorMod(z, cell) / cell;
+        double v = 0;
+        for (int i = 0; i < 8; i++) {
+            int dx = i & 1, dy = (i >> 1) & 1, dz = i >> 2;
+            double wgt = (dx == 1 ? fx : 1 - fx) * (dy == 1 ? fy : 1 - fy) * (dz == 1 ? fz : 1 - fz);
+            v += wgt * (Math.floorMod(hash(gx + dx, gy + dy, gz + dz), 1024) / 1023.0);
+        }
+        return v;
+    }
+
+    private static int hash(int x, int y, int z) {
+        int h = x * 73856093 ^ y * 19349663 ^ z * 83492791;
+        h ^= h >>> 13;
+        h *= 0x5bd1e995;
+        return h ^ (h >>> 15);
+    }
+}
@@ -0,0 +1,163 @@
+package name.azathoth;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Server-Sent Events für /stream?channels=position,inventory&every=2.
+ * Am Ende jedes Client-Ticks werden die fälligen Kanäle aller Abonnenten auf dem Client-Thread
+ * gelesen (jeder Kanal höchstens einmal pro Tick und Parametersatz); ein Event geht nur raus,
+ * wenn sich der Wert seit dem letzten Event an diesen Abonnenten geändert hat. Serialisiert und
+ * geschrieben wird auf dem HTTP-Thread des Abonnenten, der Client-Thread wartet nie auf das Netz.
+ */
+public final class TelemetryStream {
+    static final int MAX_SUBSCRIBERS = 16;
+    /** Ausstehende Events pro Abonnent; läuft die Schlange über, wird sie verworfen und neu synchronisiert. */
+    static final int QUEUE_CAPACITY = 256;
+    static final long HEARTBEAT_MS = 15_000;
+
+    private record Event(long tick, String channel, Object value) {}
+
+    private static final class Subscriber {
+        final List<String> channels;
+        final Map<String, String> params;
+        final int every;
+        final Map<String, Object> last = new HashMap<>();
+        final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        Subscriber(List<String> channels, Map<String, String> params, int every) {
+            this.channels = channels;
+            this.params = params;
+            this.every = every;
+        }
+    }
+
+    private final Map<String, Function<Map<String, String>, Object>> channels;
+    private final Gson gson;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private long tick;
+
+    /**
+     * @param channels Kanalname → Leser; läuft auf dem Client-Thread, Ausnahmen werden als
+     *                 {"error": ...} gesendet
+     */
+    TelemetryStream(Map<String, Function<Map<String, String>, Object>> channels, Gson gson) {
+        this.channels = channels;
+        this.gson = gson;
+    }
+
+    public Set<String> channelNames() {
+        return channels.keySet();
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Am Ende jedes Client-Ticks aufrufen, auf dem Client-Thread. */
+    public void tick() {
+        tick++;
+        if (subscribers.isEmpty()) return;
+        Map<String, Object> read = new HashMap<>();
+        for (Subscriber sub : subscribers) {
+            if (tick % sub.every != 0) continue;
+            for (String ch : sub.channels) {
+                Object value = read.computeIfAbsent(ch + sub.params, k -> readChannel(ch, sub.params));
+                if (Objects.equals(value, sub.last.get(ch))) continue;
+                sub.last.put(ch, value);
+                if (!sub.queue.offer(new Event(tick, ch, value))) {
+                    // Abonnent kommt nicht hinterher: alte Events weg, beim nächsten Mal alles neu senden
+                    sub.queue.clear();
+                    sub.last.clear();
+                }
+            }
+        }
+    }
+
+    private Object readChannel(String ch, Map<String, String> params) {
+        try {
+            return channels.get(ch).apply(params);
+        } catch (RuntimeException e) {
+            return Map.of("error", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Beantwortet /stream und blockiert, bis der Client die Verbindung schließt.
+     * Parameter: channels (Kommaliste, Standard position), every (alle n Ticks, Standard 1),
+     * alle übrigen gehen an die Kanäle weiter (z.B. r für entities).
+     */
+    void serve(HttpExchange ex, Map<String, String> params) throws IOException {
+        List<String> chs = List.of(params.getOrDefault("channels", "position").split(","));
+        for (String ch : chs) {
+            if (!channels.containsKey(ch)) {
+                sendError(ex, 400, "Unbekannter Kanal: " + ch + " (verfügbar: " + String.join(",", channels.keySet()) + ")");
+                return;
+            }
+        }
+        int every;
+        try {
+            every = Math.max(1, Integer.parseInt(params.getOrDefault("every", "1")));
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "Ungültiger Wert für every");
+            return;
+        }
+        if (subscribers.size() >= MAX_SUBSCRIBERS) {
+            sendError(ex, 503, "Zu viele Abonnenten");
+            return;
+        }
+        Map<String, String> channelParams = new TreeMap<>(params);
+        channelParams.remove("channels");
+        channelParams.remove("every");
+
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        Subscriber sub = new Subscriber(chs, channelParams, every);
+        subscribers.add(sub);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(": verbunden\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                Event e = sub.queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                if (e == null) {
+                    // hält die Verbindung offen und bemerkt geschlossene Clients
+                    sb.append(": ping\n\n");
+                } else {
+                    // alles Angefallene in einem Rutsch schreiben
+                    do {
+                        sb.append("id: ").append(e.tick()).append('\n')
+                          .append("event: ").append(e.channel()).append('\n')
+                          .append("data: ").append(gson.toJson(e.value())).append("\n\n");
+                    } while ((e = sub.queue.poll()) != null);
+                }
+                os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                sb.setLength(0);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client hat die Verbindung geschlossen
+        } finally {
+            subscribers.remove(sub);
+        }
+    }
+
+    private static void sendError(HttpExchange ex, int code, String msg) throws IOException {
+        byte[] data = msg.getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(code, data.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(data);
+        }
+    }
+}
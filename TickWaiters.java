@@ -0,0 +1,79 @@
+package name.azathoth;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Long-Poll für /wait: eine Bedingung wird am Ende jedes Client-Ticks geprüft, der wartende
+ * HTTP-Thread wird beim ersten Treffer geweckt. Ersetzt das Polling von /block_status o.ä.
+ * aus den Clients; die Reaktionszeit ist höchstens ein Tick.
+ */
+public final class TickWaiters {
+    static final int MAX_WAITERS = 64;
+
+    /**
+     * @param ok       Bedingung erfüllt (sonst Zeitüberschreitung)
+     * @param state    zuletzt beobachteter Wert, null wenn noch kein Tick gelaufen ist
+     */
+    public record Result(boolean ok, Object state, long waitedMs) {}
+
+    private static final class Waiter {
+        final Supplier<Object> observe;
+        final Predicate<Object> done;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile Object last;
+
+        Waiter(Supplier<Object> observe, Predicate<Object> done) {
+            this.observe = observe;
+            this.done = done;
+        }
+    }
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    public int size() {
+        return waiters.size();
+    }
+
+    /** Am Ende jedes Client-Ticks aufrufen, auf dem Client-Thread. */
+    public void tick() {
+        for (Waiter w : waiters) {
+            try {
+                Object v = w.observe.get();
+                w.last = v;
+                if (w.done.test(v)) w.future.complete(v);
+            } catch (RuntimeException e) {
+                w.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Blockiert den aufrufenden Thread, bis done für den beobachteten Wert gilt oder timeoutMs um ist.
+     * @param observe liest den Zustand, läuft auf dem Client-Thread
+     * @throws IllegalStateException wenn schon {@link #MAX_WAITERS} Anfragen warten
+     * @throws RuntimeException was observe geworfen hat
+     */
+    public Result await(Supplier<Object> observe, Predicate<Object> done, long timeoutMs) throws InterruptedException {
+        if (waiters.size() >= MAX_WAITERS) throw new IllegalStateException("Zu viele wartende Anfragen");
+        long t0 = System.nanoTime();
+        Waiter w = new Waiter(observe, done);
+        waiters.add(w);
+        try {
+            Object v = w.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return new Result(true, v, (System.nanoTime() - t0) / 1_000_000);
+        } catch (TimeoutException e) {
+            return new Result(false, w.last, (System.nanoTime() - t0) / 1_000_000);
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } finally {
+            waiters.remove(w);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package name.azathoth;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Meldet Blockänderungen und geladene/entladene Chunks der Client-Welt an registrierte Listener.
+ * Blockänderungen kommen aus {@link name.azathoth.mixin.WorldMixin}, Chunks aus den
+ * Fabric-Events. Alle Aufrufe laufen auf dem Client-Thread.
+ */
+public final class WorldChangeTracker {
+    public interface Listener {
+        void onBlockChanged(World world, BlockPos pos, BlockState state);
+
+        void onChunkChanged(World world, int cx, int cz, boolean loaded);
+    }
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private WorldChangeTracker() {}
+
+    public static void register() {
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) ->
+                chunkChanged(world, chunk.getPos().x, chunk.getPos().z, true));
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) ->
+                chunkChanged(world, chunk.getPos().x, chunk.getPos().z, false));
+    }
+
+    public static void addListener(Listener l) { listeners.add(l); }
+
+    public static void removeListener(Listener l) { listeners.remove(l); }
+
+    /** Aufgerufen vom Mixin, nachdem World.setBlockState auf dem Client erfolgreich war. */
+    public static void blockChanged(World world, BlockPos pos, BlockState state) {
+        BlockPos immutable = pos.toImmutable();
+        for (Listener l : listeners) l.onBlockChanged(world, immutable, state);
+    }
+
+    private static void chunkChanged(World world, int cx, int cz, boolean loaded) {
+        for (Listener l : listeners) l.onChunkChanged(world, cx, cz, loaded);
+    }
+}
@@ -0,0 +1,52 @@
+package qwermotion.azathoth;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Arrays;
+
+/**
+ * Minecraft-Adapter für {@link CostGrid.Sampler}: tastet direkt die Chunk-Sections einer
+ * geladenen Welt ab. Nur auf dem Client-Thread benutzen; für andere Threads gibt es
+ * {@link SectionSnapshot} und {@link SnapshotSampler}, ohne Minecraft {@link SyntheticWorlds}.
+ */
+final class WorldSampler implements CostGrid.Sampler {
+    private final World world;
+
+    WorldSampler(World world) {
+        this.world = world;
+    }
+
+    @Override
+    public void sample(int sx, int sy, int sz, byte[] flags, byte[] hardness) {
+        ChunkSection section = section(sx, sy, sz);
+        if (section == null || section.isEmpty()) {
+            Arrays.fill(flags, CostGrid.EMPTY_FLAGS);
+            return;
+        }
+        BlockCostTable table = BlockCostTable.current();
+        BlockState last = null;
+        int cell = 0;
+        for (int y = 0; y < 16; y++)
+            for (int z = 0; z < 16; z++)
+                for (int x = 0; x < 16; x++) {
+                    BlockState bs = section.getBlockState(x, y, z);
+                    if (bs != last) { // Nachbarn sind meist derselbe State
+                        last = bs;
+                        cell = table.cell(bs);
+                    }
+                    int i = (y << 8) | (z << 4) | x;
+                    flags[i] = (byte) cell;
+                    hardness[i] = (byte) (cell >> 8);
+                }
+    }
+
+    private ChunkSection section(int sx, int sy, int sz) {
+        if (sy < world.getBottomSectionCoord() || sy >= world.getTopSectionCoord()) return null;
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(sx, sz, false);
+        if (chunk == null) return null;
+        return chunk.getSectionArray()[world.sectionCoordToIndex(sy)];
+    }
+}
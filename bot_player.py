@@ -1,39 +1,105 @@
 import requests
+import struct
 from Pathfinder import Pathfinder
 import pyautogui
 import time
 
+def _read_varint(data, i):
+    v = shift = 0
+    while True:
+        b = data[i]; i += 1
+        v |= (b & 0x7F) << shift
+        shift += 7
+        if b < 0x80:
+            return v, i
+
+
+def decode_world_snapshot(data, skip_air=True, world=None):
+    """Dekodiert /world_snapshot?format=binary (siehe SnapshotCodec.java) in das Format der
+    JSON-Variante: "x,y,z" -> block_id. Luft wird standardmäßig weggelassen, der Pathfinder
+    behandelt fehlende Einträge ohnehin als Luft. Ein Delta (since=...) wird in world eingetragen."""
+    if data[:4] == b"AZWD" and data[4] == 1:
+        world = {} if world is None else world
+        n, i = _read_varint(data, 13)
+        for _ in range(n):
+            length, i = _read_varint(data, i)
+            decode_world_snapshot(data[i:i + length], skip_air, world)
+            i += length
+        return world
+    if data[:4] != b"AZWS" or data[4] != 1:
+        raise ValueError("Kein Welt-Schnappschuss")
+    x0, y0, z0, sx, sy, sz = struct.unpack_from(">6i", data, 5)
+    i = 29
+    n, i = _read_varint(data, i)
+    palette = []
+    for _ in range(n):
+        length, i = _read_varint(data, i)
+        palette.append(data[i:i + length].decode("utf-8"))
+        i += length
+    world = {} if world is None else world
+    cell, total = 0, sx * sy * sz
+    while cell < total:
+        idx, i = _read_varint(data, i)
+        run, i = _read_varint(data, i)
+        block = palette[idx]
+        air = skip_air and block == "minecraft:air"
+        for c in range(cell, cell + run):
+            # Reihenfolge x außen, dann z, y innen
+            x, rest = divmod(c, sz * sy)
+            z, y = divmod(rest, sy)
+            key = f"{x0 + x},{y0 + y},{z0 + z}"
+            if air:
+                world.pop(key, None)
+            else:
+                world[key] = block
+        cell += run
+    return world
+
+
 class Bot:
 
     world = None
+    world_version = None
+    world_center = None
  
     path = []
 
     def __init__(self):
-        pass
+        # eine Sitzung: Verbindungen bleiben offen, gzip wird von requests ausgepackt
+        self.http = requests.Session()
 
     def get_player_position(self):
         try:
-            response = requests.get("http://localhost:8080/position")
+            response = self.http.get("http://localhost:8080/position")
             response.raise_for_status()
             return response.json()
         except requests.RequestException as e:
             return {"error": str(e)}
 
-    def get_world_snapshot(self):
+    def get_world_snapshot(self, center=None):
+        """Holt den Würfel r=64; bei gleichem center und vorhandener Kopie nur die geänderten Sections."""
         print("getting world data...")
         try:
-            response = requests.get("http://localhost:8080/world_snapshot?r=64")
+            params = {"r": 64, "format": "binary"}
+            if center is not None:
+                params.update(x=center[0], y=center[1], z=center[2])
+                if self.world_version is not None and self.world_center == center:
+                    params["since"] = self.world_version
+            response = self.http.get("http://localhost:8080/world_snapshot", params=params)
             response.raise_for_status()
             print("got world data")
-            return response.json()
+            delta = response.content[:4] == b"AZWD"
+            self.world = decode_world_snapshot(response.content, world=self.world if delta else None)
+            self.world_version = response.headers.get("X-Snapshot-Version") if center is not None else None
+            self.world_center = center
+            return self.world
         except requests.RequestException as e:
             print("error getting world data")
             return {"error": str(e)}
 
     def find_path(self, start, goal):
         print("trying to find path...")
-        world = self.get_world_snapshot()
+        world = self.get_world_snapshot(center=start)
         pathfinder = Pathfinder(world)
         self.path = pathfinder.find_path(start, goal)
         if self.path:
@@ -1,28 +1,33 @@
 import cv2
 import numpy as np
 import requests
+import json
+import threading
 import time
 
 # Farbe: Dunkelgrün in BGR
 GREEN = (0, 150, 0)
 FONT = cv2.FONT_HERSHEY_SIMPLEX
 
-def get_player_position():
-    try:
-        response = requests.get("http://localhost:8080/position")
-        response.raise_for_status()
-        return response.json()
-    except requests.RequestException as e:
-        return {"error": str(e)}
-
-def get_look_at_block():
-    try:
-        response = requests.get("http://localhost:8080/looking_block")
-        response.raise_for_status()
-        return response.json()
-    except requests.RequestException as e:
-        return {"error": str(e)}
-    
+# Letzter Stand pro Kanal, wird vom Stream-Thread aktualisiert
+latest = {"position": {"error": "noch keine Daten"}, "looking_block": {}}
+
+def follow_stream():
+    """Liest /stream (Server-Sent Events) statt /position und /looking_block zu pollen."""
+    while True:
+        try:
+            params = {"channels": "position,looking_block", "every": 1}
+            with requests.get("http://localhost:8080/stream", params=params, stream=True) as r:
+                r.raise_for_status()
+                event = None
+                for line in r.iter_lines(decode_unicode=True):
+                    if line.startswith("event: "):
+                        event = line[7:]
+                    elif line.startswith("data: ") and event is not None:
+                        latest[event] = json.loads(line[6:])
+        except requests.RequestException as e:
+            latest["position"] = {"error": str(e)}
+            time.sleep(1)
 
 def draw_text(img, text, pos, color=GREEN, scale=0.7, thickness=1):
     cv2.putText(img, text, pos, FONT, scale, color, thickness, lineType=cv2.LINE_AA)
@@ -30,10 +35,12 @@ def draw_text(img, text, pos, color=GREEN, scale=0.7, thickness=1):
 
 width, height = 800, 200
 
+threading.Thread(target=follow_stream, daemon=True).start()
+
 while True:
     frame = np.zeros((height, width, 3), dtype=np.uint8)
-    data = get_player_position()
-    look_at_data = get_look_at_block()
+    data = latest["position"]
+    look_at_data = latest["looking_block"]
 
     if "error" in data:
         draw_text(frame, "Fehler: " + data["error"], (10, 50), color=(0, 0, 255))
@@ -41,10 +48,9 @@ while True:
         draw_text(frame, f"X: {data['x']:.2f}", (10, 40))
         draw_text(frame, f"Y: {data['y']:.2f}", (10, 70))
         draw_text(frame, f"Z: {data['z']:.2f}", (10, 100))
-        draw_text(frame, f"Look: ({data['look_x']:.2f}, {data['look/setblock -38 64 309 minecraft:glass_block
-                  t/setblock -37 64 309 minecraft:glass_block
-                  _y']:.2f}, {data['look_z']:.2f})", (10, 130))
-        draw_text(frame, f"faced Block: ({look_at_data['block']}, {look_at_data['x']:}, {look_at_data['y']:}, {look_at_data['z']:})", (10, 160))
+        draw_text(frame, f"Look: ({data['look_x']:.2f}, {data['look_y']:.2f}, {data['look_z']:.2f})", (10, 130))
+        if "block" in look_at_data:
+            draw_text(frame, f"faced Block: ({look_at_data['block']}, {look_at_data['x']:}, {look_at_data['y']:}, {look_at_data['z']:})", (10, 160))
 
     cv2.imshow("Spielerdaten", frame)
 